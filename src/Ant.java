@@ -1,24 +1,129 @@
 package src;
 
 import java.security.InvalidParameterException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 public class Ant {
-    ArrayList<City> tourMemory = new ArrayList<City>();
-    ArrayList<Edge> edgePath = new ArrayList<Edge>();
-    City currentCity;
-    City startingCity;
+    // The tour is stored as the ids of the cities visited, in order. It has room
+    // for every city plus the return to the starting city.
+    int[] tourMemory;
+    int tourSize;
+    // The length of the tour so far, added to as each city is visited, so it never
+    // has to be worked out by walking the tour again
+    double tourLength;
+    int currentCity;
+    int startingCity;
+    Graph graph;
+    // Scratch space reused for every step of the tour. visited is indexed by city
+    // id, unvisited holds the ids of the cities still to go to in its first
+    // numUnvisited slots, and unvisitedPosition is where each city is in it, so a
+    // visited city can be swapped out of the array without searching for it.
+    boolean[] visited;
+    int[] unvisited;
+    int[] unvisitedPosition;
+    int numUnvisited;
+    // The candidates for the next city that haven't been visited yet
+    int[] candidateScratch;
+    // The paths out of the current city to cities not yet visited, when the
+    // pheromone is kept per path (on a sparse graph, or for the candidate lists)
+    int[] neighbourScratch;
+    // Each ant has its own random number generator and fitness, so ants can build
+    // their tours on different threads at the same time
+    Random random = new Random();
+    double fitness;
 
     /**
      * Constructor
      * 
      * @param c - The starting City of the Ant
+     * @param g - The Graph the Ant is touring
      */
-    public Ant(City c) {
+    public Ant(City c, Graph g) {
         // This sets the starting city
-        currentCity = c;
-        startingCity = c;
-        tourMemory.add(c);
+        graph = g;
+        int numCities = g.getNumCities();
+        tourMemory = new int[numCities + 1];
+        visited = new boolean[numCities];
+        unvisited = new int[numCities];
+        unvisitedPosition = new int[numCities];
+        for (int i = 0; i < numCities; i++) {
+            unvisited[i] = i;
+            unvisitedPosition[i] = i;
+        }
+        numUnvisited = numCities;
+        candidateScratch = new int[g.getCandidateListSize()];
+        neighbourScratch = new int[g.getMaxPathDegree()];
+        tourSize = 0;
+        tourLength = 0;
+        currentCity = -1;
+        startingCity = -1;
+        if (c != null) {
+            startingCity = c.getId();
+            visitCity(c.getId());
+        }
+    }
+
+    /**
+     * Resets the ant so it can construct a new tour, reusing all of its arrays
+     * 
+     * @param c - City - The new starting City of the Ant
+     */
+    public void reset(City c) {
+        // The unvisited array is always a permutation of every city, so it only needs
+        // its count restoring to make every city unvisited again
+        Arrays.fill(visited, false);
+        numUnvisited = graph.getNumCities();
+        tourSize = 0;
+        tourLength = 0;
+        startingCity = c.getId();
+        visitCity(startingCity);
+    }
+
+    /**
+     * Getter - gets the ant's random number generator
+     * 
+     * @return Random - the random number generator
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Setter - sets the ant's random number generator
+     * 
+     * @param r - Random - the new random number generator
+     */
+    public void setRandom(Random r) {
+        random = r;
+    }
+
+    /**
+     * Getter - gets the fitness of the ant's last tour
+     * 
+     * @return double - the fitness
+     */
+    public double getFitness() {
+        return fitness;
+    }
+
+    /**
+     * Setter - sets the fitness of the ant's last tour
+     * 
+     * @param f - double - the fitness
+     */
+    public void setFitness(double f) {
+        fitness = f;
+    }
+
+    /**
+     * Getter - gets the length of the ant's tour, as it has been built so far. Once
+     * the tour is finished this is the same as calculateOverallFitness.
+     * 
+     * @return double - the length of the tour
+     */
+    public double getTourLength() {
+        return tourLength;
     }
 
     /**
@@ -27,7 +132,7 @@ public class Ant {
      * @param c - The City to set the current city to
      */
     public void setCurrentCity(City c) {
-        currentCity = c;
+        currentCity = c.getId();
     }
 
     /**
@@ -36,7 +141,7 @@ public class Ant {
      * @return City - the current city
      */
     public City getCurrentCity() {
-        return currentCity;
+        return graph.getCity(currentCity);
     }
 
     /**
@@ -45,39 +150,67 @@ public class Ant {
      * @return City - the initial city of the ant
      */
     public City getStartingCity() {
-        return startingCity;
+        return graph.getCity(startingCity);
     }
 
     /**
-     * Getter - gets the tour memory (list of all cities visited)
+     * Getter - gets the tour memory (the ids of all cities visited, in order)
      * 
-     * @return ArrayList<City> - The list of all the cities visited
+     * @return int[] - A copy of the ids of all the cities visited
      */
-    public ArrayList<City> getTourMemory() {
-        return tourMemory;
+    public int[] getTourMemory() {
+        return Arrays.copyOf(tourMemory, tourSize);
     }
 
     /**
-     * Setter - sets the tour memory (list of all cities visited)
+     * Setter - sets the tour memory (the ids of all cities visited, in order)
      * 
-     * @param c - The ArrayList of all the cities visited
+     * @param t - The ids of all the cities visited
      */
-    public void setTourMemory(ArrayList<City> c) {
-        tourMemory = c;
+    public void setTourMemory(int[] t) {
+        tourMemory = Arrays.copyOf(t, Math.max(t.length, graph.getNumCities() + 1));
+        tourSize = t.length;
+        tourLength = graph.calculateTourLength(t);
     }
 
     /**
      * Adds a stop on the ant's tour of all the cities
      * 
-     * @param c - The city to be added to the tour
+     * @param c - int - The id of the city to be added to the tour
+     */
+    public void addCityToTour(int c) {
+        tourMemory[tourSize] = c;
+        tourSize++;
+    }
+
+    /**
+     * Moves the ant to a city - marks it as visited, removes it from the unvisited
+     * cities, and adds it to the tour
+     * 
+     * @param c - int - The id of the city to be visited
      */
-    public void addCityToTour(City c) {
-        tourMemory.add(c);
+    public void visitCity(int c) {
+        visited[c] = true;
+        // Swap the last unvisited city into the visited city's slot
+        int position = unvisitedPosition[c];
+        int last = unvisited[numUnvisited - 1];
+        unvisited[position] = last;
+        unvisitedPosition[last] = position;
+        unvisited[numUnvisited - 1] = c;
+        unvisitedPosition[c] = numUnvisited - 1;
+        numUnvisited--;
+        if (tourSize > 0) {
+            tourLength += graph.getWeight(currentCity, c);
+        }
+        currentCity = c;
+        addCityToTour(c);
     }
 
     /**
      * Calculates the overall fitness of an ant's route
-     * The weight of each edge added together
+     * The weight of each edge added together, walking the whole tour. The same
+     * length is kept up to date by getTourLength as the tour is built, so this is
+     * only needed to check it.
      * 
      * @return double - The fitness of this ant's solution
      * @throws InvalidParameterException - If a city in the tour memory doesn't have
@@ -85,21 +218,21 @@ public class Ant {
      */
     public double calculateOverallFitness() throws InvalidParameterException {
         double retValue = 0;
-        for (int i = 0; i < tourMemory.size() - 1; i++) {
+        for (int i = 0; i < tourSize - 1; i++) {
 
             // We terminate at size -1 one, as in the case of A->B->C, you only need the
             // measurements for A->B and B->C. There is
             // no C->null value
             // For whatever the next node in the list is...
-            String nextCityName = tourMemory.get(i + 1).getName();
-            // ...get the name and add the weight from current city to that city
-            double valueToAdd = tourMemory.get(i).getWeightForEdge(nextCityName);
-            if (valueToAdd != -1) {
-                retValue += tourMemory.get(i).getWeightForEdge(nextCityName);
+            int nextCity = tourMemory[i + 1];
+            // ...add the weight from current city to that city
+            double valueToAdd = graph.getWeight(tourMemory[i], nextCity);
+            if (valueToAdd != Graph.NO_PATH) {
+                retValue += valueToAdd;
             } else {
                 throw new InvalidParameterException(
-                        "A city is in the tour memory that a connection doesn't exist for. City " + currentCity + " to "
-                                + nextCityName);
+                        "A city is in the tour memory that a connection doesn't exist for. City " + tourMemory[i]
+                                + " to " + nextCity);
             }
         }
         return retValue;
@@ -108,44 +241,192 @@ public class Ant {
     /**
      * Checks to see if a city has already been visited
      * 
-     * @param e - Edge - The edge being explored
+     * @param c - int - The id of the city being explored
      * @return boolean - Whether or not a city has been visited before
      */
-    public boolean checkIfVisited(Edge e) {
-        for (City c : tourMemory) {
-            // This is name comparison, rather than memory address comparison
-            if (c.getName() == e.getDestination().getName()) {
-                return true;
+    public boolean checkIfVisited(int c) {
+        return visited[c];
+    }
+
+    /**
+     * This determines out of the possible paths, which one an ant should take
+     * This picks a path at random, with the chance of each path being proportional
+     * to its choice info:
+     * pheromone^alpha * (1 / weight)^beta
+     * so paths with more pheromone and less weight (or cost) are more likely. The
+     * choice info is read from the Graph, where it was computed before the tour
+     * started.
+     * 
+     * @param from         - int - The id of the city the ant is currently in
+     * @param destinations - int[] - The ids of all the cities an ant could go to
+     *                     next
+     * @param count        - int - How many of the destinations to consider, from
+     *                     the start of the array
+     * @return int - The id of the chosen destination, or -1 if there is no path to
+     *         any of them
+     */
+    public int decidePath(int from, int[] destinations, int count) {
+        // As a long, as an off-heap matrix can have more than Integer.MAX_VALUE entries
+        long row = (long) from * graph.getNumCities();
+        // A missing path has no heuristic value, so its choice info is 0 and it can
+        // never be picked - the paths don't need checking one by one
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += choiceInfo(row + destinations[i]);
+        }
+        if (total > 0) {
+            // Spin the roulette wheel - walk along the destinations until the running
+            // total passes the random point
+            double point = random.nextDouble() * total;
+            double runningTotal = 0;
+            int last = -1;
+            for (int i = 0; i < count; i++) {
+                int to = destinations[i];
+                double c = choiceInfo(row + to);
+                if (c > 0) {
+                    runningTotal += c;
+                    last = to;
+                    if (runningTotal > point) {
+                        return to;
+                    }
+                }
+            }
+            // Rounding can leave the point just past the final total
+            return last;
+        }
+        // Every choice info is 0 - either there are no paths, or they've all
+        // underflowed, in which case any reachable city is as good as another
+        int reachable = 0;
+        for (int i = 0; i < count; i++) {
+            if (graph.hasPath(from, destinations[i])) {
+                reachable++;
+            }
+        }
+        if (reachable == 0) {
+            return -1;
+        }
+        int pick = random.nextInt(reachable);
+        for (int i = 0; i < count; i++) {
+            int to = destinations[i];
+            if (graph.hasPath(from, to)) {
+                if (pick == 0) {
+                    return to;
+                }
+                pick--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads an entry of the Graph's choice info matrix, from whichever form the
+     * Graph holds it in
+     * 
+     * @param idx - long - the index of the entry, i * numCities + j for [i][j]
+     * @return double - the choice info
+     */
+    private double choiceInfo(long idx) {
+        // The on-heap matrices are only allocated when their entries fit in an int
+        double[] choiceInfo = graph.getChoiceInfoMatrix();
+        if (choiceInfo != null) {
+            return choiceInfo[(int) idx];
+        }
+        float[] compactChoiceInfo = graph.getCompactChoiceInfoMatrix();
+        if (compactChoiceInfo != null) {
+            return compactChoiceInfo[(int) idx];
+        }
+        return graph.getOffHeapChoiceInfoMatrix().get(idx);
+    }
+
+    /**
+     * This determines the next city from the current city's candidate list - its
+     * nearest neighbours - leaving out those already visited
+     * 
+     * @param from - int - The id of the city the ant is currently in
+     * @return int - The id of the chosen destination, or -1 if every candidate has
+     *         been visited
+     */
+    public int decideFromCandidates(int from) {
+        int[] candidateLists = graph.getCandidateLists();
+        int k = graph.getCandidateListSize();
+        int count = 0;
+        for (int i = from * k; i < (from + 1) * k; i++) {
+            int to = candidateLists[i];
+            if (to == -1) {
+                break;
+            }
+            if (!visited[to]) {
+                candidateScratch[count] = to;
+                count++;
             }
         }
-        return false;
+        if (count == 0) {
+            return -1;
+        }
+        return decidePath(from, candidateScratch, count);
     }
 
     /**
-     * This determines out of the possible paths, which one an ant should take
-     * This does it by using the equation:
-     * weight * beta / pheromone *alpha
-     * We are trying to maximise the pheromone while minimising the weight (or cost)
-     * of a path
-     * 
-     * @param edges           - ArrayList<Edge> - All the possible edges for an ant
-     *                        to go down
-     * @param pheromoneWeight - The alpha value, how much the pheromone value should
-     *                        be taken into account
-     * @param weightWeight    - The beta value, how much the weight of an edge
-     *                        should be taken into account
-     * @return Edge - The best Edge out of the list
-     */
-    public Edge decidePath(ArrayList<Edge> edges, double pheromoneWeight, double weightWeight) {
-        Edge bestEdge = edges.get(0);
-        for (Edge e : edges) {
-            if ((e.getWeight() * weightWeight)
-                    / (e.getPheromone() * pheromoneWeight) < (bestEdge.getWeight() * weightWeight)
-                            / (bestEdge.getPheromone() * pheromoneWeight)) {
-                bestEdge = e;
+     * This determines the next city when the pheromone is kept per path - on a
+     * sparse graph, or in candidate pheromone mode - only looking at the paths
+     * stored for the current city rather than at every unvisited city. The choice
+     * is made by roulette wheel, as in decidePath.
+     * 
+     * @param from - int - The id of the city the ant is currently in
+     * @return int - The id of the chosen destination, or -1 if every neighbour has
+     *         been visited
+     */
+    public int decideFromNeighbours(int from) {
+        int[] offsets = graph.getPathOffsets();
+        int[] targets = graph.getPathTargets();
+        float[] choiceInfo = graph.getCompactChoiceInfoMatrix();
+        int count = 0;
+        double total = 0;
+        for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+            if (!visited[targets[e]]) {
+                neighbourScratch[count] = e;
+                count++;
+                total += choiceInfo[e];
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        if (total > 0) {
+            double point = random.nextDouble() * total;
+            double runningTotal = 0;
+            for (int k = 0; k < count; k++) {
+                runningTotal += choiceInfo[neighbourScratch[k]];
+                if (runningTotal > point) {
+                    return targets[neighbourScratch[k]];
+                }
             }
+            // Rounding can leave the point just past the final total
+            return targets[neighbourScratch[count - 1]];
         }
-        return bestEdge;
+        return targets[neighbourScratch[random.nextInt(count)]];
+    }
+
+    /**
+     * This picks the nearest city not yet visited. It is used in candidate
+     * pheromone mode once every city in the current city's candidate list has been
+     * visited, as only the listed paths have choice info to choose by.
+     * 
+     * @param from - int - The id of the city the ant is currently in
+     * @return int - The id of the nearest unvisited city, or -1 if there is no path
+     *         to any of them
+     */
+    public int decideNearest(int from) {
+        int best = -1;
+        double bestWeight = Double.MAX_VALUE;
+        for (int i = 0; i < numUnvisited; i++) {
+            double w = graph.getWeight(from, unvisited[i]);
+            if (w != Graph.NO_PATH && w < bestWeight) {
+                bestWeight = w;
+                best = unvisited[i];
+            }
+        }
+        return best;
     }
 
     /**
@@ -153,65 +434,87 @@ public class Ant {
      * more legible
      */
     public void returnJourney() {
-        ArrayList<Edge> paths = currentCity.getPaths();
-        for (Edge e : paths) {
-            if (e.getDestination().getName() == startingCity.getName()) {
-                edgePath.add(e);
-                currentCity = startingCity;
-                tourMemory.add(startingCity);
-                break;
-            }
+        double w = graph.getWeight(currentCity, startingCity);
+        if (w != Graph.NO_PATH) {
+            tourLength += w;
+            currentCity = startingCity;
+            addCityToTour(startingCity);
         }
     }
 
     /**
-     * This calculates the path an ant takes
-     * 
-     * @param allCities - All the possible cities in the graph
-     * @param alpha     - How much the pheromone value impacts the path chosen
-     * @param beta      - How much the weight of an edge impacts the path chosen
+     * This calculates the path an ant takes, using the Graph's choice info
      */
-    public void calculatePath(ArrayList<City> allCities, double alpha, double beta) {
-        while (tourMemory.size() < allCities.size()) {
-            // Get all the possible paths for the current city,
-            // Then remove the cities already visited
-            ArrayList<Edge> possiblePaths = new ArrayList<Edge>(currentCity.getPaths());
-            ArrayList<Edge> pathsToRemove = new ArrayList<Edge>();
-            for (Edge p : possiblePaths) {
-                if (checkIfVisited(p)) {
-                    pathsToRemove.add(p);
+    public void calculatePath() {
+        while (numUnvisited > 0) {
+            // Try the nearest neighbours first, and only if they have all been visited
+            // pass every city not yet visited to the decidePath method
+            int best = -1;
+            if (graph.isSparse()) {
+                // Every city that can be reached next is in the current city's row
+                best = decideFromNeighbours(currentCity);
+            } else if (graph.isCandidatePheromone()) {
+                // Only the candidate lists have choice info
+                best = decideFromNeighbours(currentCity);
+                if (best == -1) {
+                    best = decideNearest(currentCity);
+                }
+            } else {
+                if (candidateScratch.length > 0) {
+                    best = decideFromCandidates(currentCity);
+                }
+                if (best == -1) {
+                    best = decidePath(currentCity, unvisited, numUnvisited);
                 }
             }
-            possiblePaths.removeAll(pathsToRemove);
 
             // If there are no possible paths, break out of the loop
-            if (possiblePaths.size() == 0) {
+            if (best == -1) {
                 break;
             }
-            // Pass the possible paths to the decidePath method to get the best path
-            Edge bestEdge = decidePath(possiblePaths, alpha, beta);
-
-            // Add the new edge and city to the respective lists, and update the current
-            // city to the new city
-            edgePath.add(bestEdge);
-            currentCity = bestEdge.getDestination();
-            tourMemory.add(currentCity);
 
+            // Add the new city to the tour, and update the current city to the new city
+            visitCity(best);
         }
         // Once the path is found, return to the first node
         returnJourney();
     }
 
+    /**
+     * Checks whether the ant's tour is a whole tour - it visited every city and
+     * got back to the first. On a sparse graph an ant can get stuck with no path
+     * to any unvisited city, or none back to the start, and its partial tour is
+     * shorter than any real one, so it mustn't be counted.
+     * 
+     * @return boolean - whether the tour visits every city and is closed
+     */
+    public boolean isTourComplete() {
+        // returnJourney only adds the first city again if there is a path back to it
+        return tourSize == graph.getNumCities() + 1 && tourMemory[tourSize - 1] == tourMemory[0]
+                && graph.hasPath(tourMemory[tourSize - 2], tourMemory[tourSize - 1]);
+    }
+
+    /**
+     * Improves the ant's tour with a local search, if it visited every city
+     * 
+     * @param ls - LocalSearch - the local search to use
+     */
+    public void improveTour(LocalSearch ls) {
+        if (isTourComplete()) {
+            tourLength = ls.improve(tourMemory, tourLength);
+        }
+    }
+
     /**
      * This increases the pheromone value on the edges used
      * 
-     * @param d - the increase rate of pheromone
+     * @param d - the amount of pheromone to add to each edge
      */
     public void increasePheromoneOnPath(double d) {
         // This gets called after the path has been decided - it iterates through this
         // ant's paths and increases the pheromone by d
-        for (Edge e : edgePath) {
-            e.updatePheromone(d);
+        for (int i = 0; i < tourSize - 1; i++) {
+            graph.updatePheromone(tourMemory[i], tourMemory[i + 1], d);
         }
     }
 
@@ -221,8 +524,8 @@ public class Ant {
      * @return String - The String representation
      */
     public String toString() {
-        return "My current city is: " + currentCity + " and my overall fitness right now is: "
-                + calculateOverallFitness();
+        return "My current city is: " + getCurrentCity() + " and my overall fitness right now is: "
+                + getTourLength();
     }
 
     /**
@@ -232,9 +535,10 @@ public class Ant {
      * @return String - Concatenated list of cities + variables
      */
     public String printEdgePath() {
-        String s = currentCity.getName();
-        for (Edge e : edgePath) {
-            s += "-[" + e.getWeight() + "]>" + e.getDestination().getName();
+        String s = graph.getCity(tourMemory[0]).getName();
+        for (int i = 0; i < tourSize - 1; i++) {
+            int next = tourMemory[i + 1];
+            s += "-[" + graph.getWeight(tourMemory[i], next) + "]>" + graph.getCity(next).getName();
         }
         return s;
     }
@@ -2,15 +2,62 @@ package src;
 
 import java.io.*;
 import java.util.Scanner;
-import javax.xml.parsers.*;
-import org.w3c.dom.*;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 import java.util.ArrayList;
 import java.util.Random;
 
 public class AntColonyOptimiser {
     ArrayList<Double> x = new ArrayList<Double>();
     ArrayList<Double> y = new ArrayList<Double>();
+    // How many threads the ants build their tours on, and where their random seeds
+    // come from
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    Random seedSource = new Random();
+    // How many nearest neighbours the ants consider first at each step, or 0 to
+    // always consider every city
+    int candidateListSize = 20;
+    // Whether to keep a binary copy of each graph next to its file, so later runs
+    // can map it in rather than parsing the file again
+    boolean useCache = true;
+    // Whether the pheromone is only kept for the paths in the candidate lists. It
+    // is anyway when there are too many cities for full matrices on the heap.
+    boolean candidatePheromone = false;
+    // How many megabytes of distances to each city's nearest neighbours to cache
+    // when the distances are worked out from coordinates, or 0 to work every one
+    // out when it's needed
+    int rowCacheSize = 64;
+    // Whether graphs hold their pheromone as floats and whole-number weights as
+    // ints, rather than as doubles
+    boolean compact = false;
+    // Whether graphs hold their matrices outside the Java heap
+    boolean offHeap = false;
+    // Whether graphs evaporate their pheromone lazily, through a shared scale
+    boolean lazyEvaporation = false;
+    // Which ants' tours are improved by 2-opt each iteration
+    LocalSearch.Scope localSearchScope = LocalSearch.Scope.NONE;
+    // Which kinds of local search move are tried - 2-opt, Or-opt, 3-opt and
+    // Lin-Kernighan
+    boolean[] localSearchMoves = { true, false, false, false };
+    // The local search used in the last run, kept so its counters can be shown
+    LocalSearch localSearch;
+    // Whether to run the MAX-MIN Ant System rather than the plain Ant System
+    boolean maxMin = false;
+    // How far the pheromone is moved back towards its upper bound when the MAX-MIN
+    // search stagnates - 1 starts it again from scratch
+    double smoothing = 1;
+    // How many iterations the best tour can go without improving before the
+    // MAX-MIN search is treated as stagnated
+    int restartIterations = 50;
+    // How many times the MAX-MIN search stagnated and was restarted in the last run
+    int restarts;
+    // The chance the MAX-MIN lower bound is set from - the chance that an ant
+    // whose pheromone has converged builds the best tour again
+    static final double MAX_MIN_P_BEST = 0.05;
+    /**
+     * The fitness runAntColonySim returns if no ant finished a whole tour, as can
+     * happen on a sparse graph
+     */
+    public static final double NO_TOUR = Double.MAX_VALUE;
 
     public ArrayList<Double> getY() {
         return y;
@@ -26,97 +73,353 @@ public class AntColonyOptimiser {
     }
 
     /**
-     * Parses the input XML file and accesses the DOM structure
+     * Getter - gets the number of threads the ants build their tours on
      * 
-     * @param f - File - the file to be parsed
-     * @return Document - the DOM structure extracted from the file
-     * @throws ParserConfigurationException - thrown if there's a configuration
-     *                                      issue with the document build
-     * @throws IOException                  - thrown if an IO error occurs when
-     *                                      parsing
-     * @throws SAXException                 - thrown if any parse errors occur
-     * @throws IllegalArgumentException     - thrown when the file is null
+     * @return int - the number of threads
      */
-    public Document parseXML(File f)
-            throws ParserConfigurationException, IOException, SAXException, IllegalArgumentException {
-
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(f);
-        doc.getDocumentElement().normalize();
-        return doc;
+    public int getThreadCount() {
+        return threadCount;
     }
 
     /**
-     * This sets up the Graph with the input from the XML file's DOM
+     * Setter - sets the number of threads the ants build their tours on
      * 
-     * @param doc - Document - the DOM model that the Graph is built from
-     * @return Graph - the constructed graph
-     * @throws IllegalArgumentException - if the DOM model does not contain "vertex"
+     * @param t - int - the number of threads, at least 1
      */
-    public Graph setUpGraph(Document doc) {
-        Graph retGraph = new Graph();
-        NodeList nl = doc.getElementsByTagName("vertex");
-        if (nl.getLength() == 0) {
-            throw new IllegalArgumentException(
-                    "The input XML must contain at least one \"vertex\" node. Please check your spelling");
-        }
+    public void setThreadCount(int t) {
+        threadCount = Math.max(1, t);
+    }
 
-        retGraph.setAdjacencyMatrix(nl.getLength());
+    /**
+     * Getter - gets how many nearest neighbours are in each city's candidate list
+     * 
+     * @return int - the candidate list size
+     */
+    public int getCandidateListSize() {
+        return candidateListSize;
+    }
 
-        for (int i = 0; i < nl.getLength(); i++) {
-            Node n = nl.item(i);
-            // The Node is the "vertex" element, which is a City
+    /**
+     * Setter - sets how many nearest neighbours are in each city's candidate list.
+     * This takes effect when the next graph is set up.
+     * 
+     * @param k - int - the candidate list size, or 0 to not use candidate lists
+     */
+    public void setCandidateListSize(int k) {
+        candidateListSize = Math.max(0, k);
+    }
 
-            City newCity = new City(Integer.toString(i));
+    /**
+     * Setter - sets whether graphs are cached next to their files
+     * 
+     * @param c - boolean - whether to read and write caches
+     */
+    public void setUseCache(boolean c) {
+        useCache = c;
+    }
 
-            // Now get that city's edges
-            NodeList edgeList = n.getChildNodes();
+    /**
+     * Setter - sets how much memory the cache of distances to each city's nearest
+     * neighbours may use, for graphs whose distances are worked out from
+     * coordinates
+     * 
+     * @param mb - int - the size of the cache in megabytes, or 0 for no cache
+     */
+    public void setRowCacheSize(int mb) {
+        rowCacheSize = Math.max(0, mb);
+    }
 
-            for (int j = 0; j < edgeList.getLength(); j++) {
+    /**
+     * Setter - sets whether graphs are set up in compact mode, with float pheromone
+     * and int weights
+     * 
+     * @param c - boolean - whether to use compact mode
+     */
+    public void setCompact(boolean c) {
+        compact = c;
+    }
 
-                Node newEdgeNode = edgeList.item(j);
+    /**
+     * Setter - sets whether graphs are set up in off-heap mode, with their matrices
+     * outside the Java heap
+     * 
+     * @param o - boolean - whether to use off-heap mode
+     */
+    public void setOffHeap(boolean o) {
+        offHeap = o;
+    }
 
-                if (newEdgeNode.getNodeType() == Node.ELEMENT_NODE) {
+    /**
+     * Setter - sets whether graphs keep their pheromone only for the paths in the
+     * candidate lists, rather than for every pair of cities
+     * 
+     * @param c - boolean - whether to use candidate pheromone mode
+     */
+    public void setCandidatePheromone(boolean c) {
+        candidatePheromone = c;
+    }
 
-                    Element elem = (Element) newEdgeNode;
-                    // This creates a new edge, and after the entire matrix is populated, the edges
-                    // are correctly repointed at the relevant destination City
-                    Edge newEdge = new Edge(new City(elem.getTextContent()),
-                            Double.parseDouble(elem.getAttribute("cost")), newCity);
-                    newCity.addPath(newEdge);
-                    retGraph.setAdjacencyMatrixValue(i, Integer.parseInt(elem.getTextContent()), newEdge);
+    /**
+     * Setter - sets whether graphs are set up to evaporate their pheromone lazily
+     * 
+     * @param l - boolean - whether to use lazy evaporation
+     */
+    public void setLazyEvaporation(boolean l) {
+        lazyEvaporation = l;
+    }
 
-                    // This iterates through all the edges for one 'vertex' in the file
-                    // This assigns a vertex its paths, and also inputs it in the graph's own
-                    // adjacency matrix
-                    // After it's done, it moves onto the next vertex in the list.
+    /**
+     * Setter - sets which ants' tours are improved by local search each iteration
+     * 
+     * @param s - LocalSearch.Scope - none, the best of each iteration, or all
+     */
+    public void setLocalSearch(LocalSearch.Scope s) {
+        localSearchScope = s;
+    }
+
+    /**
+     * Setter - sets which kinds of move the local search tries, from a comma
+     * separated list of 2opt, oropt, 3opt and lk
+     * 
+     * @param moves - String - the moves to try
+     * @throws IllegalArgumentException - if a move isn't recognised
+     */
+    public void setLocalSearchMoves(String moves) throws IllegalArgumentException {
+        boolean[] use = new boolean[4];
+        for (String move : moves.split(",")) {
+            if (move.trim().equalsIgnoreCase("2opt")) {
+                use[LocalSearch.TWO_OPT] = true;
+            } else if (move.trim().equalsIgnoreCase("oropt")) {
+                use[LocalSearch.OR_OPT] = true;
+            } else if (move.trim().equalsIgnoreCase("3opt")) {
+                use[LocalSearch.THREE_OPT] = true;
+            } else if (move.trim().equalsIgnoreCase("lk")) {
+                use[LocalSearch.LIN_KERNIGHAN] = true;
+            } else {
+                throw new IllegalArgumentException("Unknown local search move: " + move);
+            }
+        }
+        localSearchMoves = use;
+    }
+
+    /**
+     * Getter - gets the local search used in the last run
+     * 
+     * @return LocalSearch - the local search, or null if none was used
+     */
+    public LocalSearch getLocalSearch() {
+        return localSearch;
+    }
+
+    /**
+     * Setter - sets whether to run the MAX-MIN Ant System. Only the best tour of
+     * each iteration, or the best tour so far, lays pheromone, every path's
+     * pheromone is kept between an upper and lower bound, and the pheromone is
+     * reset when the search stagnates. Elitism and rank are ignored.
+     * 
+     * @param m - boolean - whether to use the MAX-MIN Ant System
+     */
+    public void setMaxMin(boolean m) {
+        maxMin = m;
+    }
+
+    /**
+     * Setter - sets how far the pheromone is moved back towards its upper bound
+     * when the MAX-MIN search stagnates
+     * 
+     * @param s - double - from 0 (not at all) to 1 (all the way, a full restart)
+     * @throws IllegalArgumentException - if it's outside that range
+     */
+    public void setSmoothing(double s) throws IllegalArgumentException {
+        if (s < 0 || s > 1) {
+            throw new IllegalArgumentException("Smoothing must be between 0 and 1: " + s);
+        }
+        smoothing = s;
+    }
+
+    /**
+     * Setter - sets how many iterations the best tour can go without improving
+     * before the MAX-MIN search is treated as stagnated
+     * 
+     * @param r - int - the number of iterations
+     */
+    public void setRestartIterations(int r) {
+        restartIterations = Math.max(1, r);
+    }
+
+    /**
+     * Getter - gets how many times the MAX-MIN search stagnated in the last run,
+     * and had its pheromone moved back towards the upper bound
+     * 
+     * @return int - the number of restarts
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Setter - seeds the random numbers used by the simulation, so that a run can
+     * be repeated exactly, whatever the number of threads
+     * 
+     * @param seed - long - the seed
+     */
+    public void setSeed(long seed) {
+        seedSource = new Random(seed);
+    }
+
+    /**
+     * Applies an optional setting given on the command line, in the form
+     * name=value
+     * 
+     * @param option - String - the setting to apply
+     * @throws IllegalArgumentException - if the setting isn't recognised, or its
+     *                                  value can't be read
+     */
+    public void applyOption(String option) throws IllegalArgumentException {
+        int split = option.indexOf('=');
+        if (split == -1) {
+            throw new IllegalArgumentException("Options must be in the form name=value: " + option);
+        }
+        String name = option.substring(0, split);
+        String value = option.substring(split + 1);
+        if (name.equalsIgnoreCase("threads")) {
+            setThreadCount(Integer.parseInt(value));
+        } else if (name.equalsIgnoreCase("seed")) {
+            setSeed(Long.parseLong(value));
+        } else if (name.equalsIgnoreCase("candidates")) {
+            setCandidateListSize(Integer.parseInt(value));
+        } else if (name.equalsIgnoreCase("cache")) {
+            setUseCache(Boolean.parseBoolean(value));
+        } else if (name.equalsIgnoreCase("rowcache")) {
+            setRowCacheSize(Integer.parseInt(value));
+        } else if (name.equalsIgnoreCase("compact")) {
+            setCompact(Boolean.parseBoolean(value));
+        } else if (name.equalsIgnoreCase("offheap")) {
+            setOffHeap(Boolean.parseBoolean(value));
+        } else if (name.equalsIgnoreCase("candidatepheromone")) {
+            setCandidatePheromone(Boolean.parseBoolean(value));
+        } else if (name.equalsIgnoreCase("lazy")) {
+            setLazyEvaporation(Boolean.parseBoolean(value));
+        } else if (name.equalsIgnoreCase("localsearch")) {
+            setLocalSearch(LocalSearch.Scope.valueOf(value.toUpperCase()));
+        } else if (name.equalsIgnoreCase("moves")) {
+            setLocalSearchMoves(value);
+        } else if (name.equalsIgnoreCase("mmas")) {
+            setMaxMin(Boolean.parseBoolean(value));
+        } else if (name.equalsIgnoreCase("smoothing")) {
+            setSmoothing(Double.parseDouble(value));
+        } else if (name.equalsIgnoreCase("restart")) {
+            setRestartIterations(Integer.parseInt(value));
+        } else {
+            throw new IllegalArgumentException("Unknown option: " + name);
+        }
+    }
+
+    /**
+     * This sets up the Graph from a TSPLIB file, then each city's candidate list is
+     * built. A .tsp file of coordinates only keeps the coordinates, and the
+     * distances are worked out as they're needed, with the rows of recently
+     * visited cities cached. Any other file is read as XML,
+     * and streamed straight into the Graph's weight matrix. The weights are also
+     * written to a binary cache next to the file, and if that cache is already
+     * there and up to date it is memory mapped instead of reading the file.
+     * 
+     * @param f - File - the file the Graph is built from
+     * @return Graph - the constructed graph
+     * @throws IOException              - thrown if an IO error occurs when reading
+     * @throws XMLStreamException       - thrown if any parse errors occur
+     * @throws IllegalArgumentException - thrown when the file is null, or doesn't
+     *                                  contain "vertex" (or coordinates, for a .tsp
+     *                                  file)
+     */
+    public Graph setUpGraph(File f) throws IOException, XMLStreamException, IllegalArgumentException {
+        if (f != null && f.getName().toLowerCase().endsWith(".tsp")) {
+            // The coordinates are smaller than any cache of the distances would be
+            Graph retGraph = new TspLoader().readTSP(f);
+            RowCachedDistanceMatrix rowCache = null;
+            if (rowCacheSize > 0) {
+                rowCache = new RowCachedDistanceMatrix(retGraph.getDistanceMatrix());
+                retGraph.setDistanceMatrix(rowCache);
+            }
+            retGraph.setCompact(compact);
+            retGraph.setOffHeap(offHeap);
+            retGraph.setLazyEvaporation(lazyEvaporation);
+            retGraph.buildCandidateLists(candidateListSize);
+            int k = retGraph.getCandidateListSize();
+            if (rowCache != null && k > 0) {
+                // Keep the distances to each city's nearest neighbours, which the ants and
+                // the local search look up over and over, rather than working them out
+                // every time. Once there are more cities than rows, the least recently
+                // used rows are evicted.
+                long rowBytes = (long) k * Double.BYTES;
+                int rows = (int) Math.min(Integer.MAX_VALUE, rowCacheSize * 1024L * 1024L / rowBytes);
+                rowCache.setNeighbours(retGraph.getCandidateLists(), k, rows);
+            }
+            setUpCandidatePheromone(retGraph);
+            return retGraph;
+        }
+        Graph retGraph = null;
+        GraphCache cache = new GraphCache();
+        if (useCache) {
+            retGraph = cache.open(f);
+        }
+        if (retGraph == null) {
+            retGraph = new GraphLoader().readXML(f);
+            // A sparse graph is already about as small as the cache would be
+            if (useCache && !retGraph.isSparse()) {
+                try {
+                    cache.write(f, retGraph);
+                } catch (IOException e) {
+                    // The cache only saves time, so the run carries on without it
+                    System.out.println("Couldn't write the graph cache: " + e.getMessage());
                 }
             }
-            retGraph.addCity(newCity);
-            // This iterates through all the cities and adds them to the graph
         }
-        retGraph.repointEdges();
-        // The above makes it so the edge's destinations are actually pointing to the
-        // City, not a placeholder.
+        retGraph.setCompact(compact);
+        retGraph.setOffHeap(offHeap);
+        retGraph.setLazyEvaporation(lazyEvaporation);
+        // Each city's nearest neighbours are worked out once, here
+        retGraph.buildCandidateLists(candidateListSize);
+        setUpCandidatePheromone(retGraph);
         return retGraph;
     }
 
+    /**
+     * Switches a graph to candidate pheromone mode if it was asked for, or if the
+     * graph has too many cities for full matrices on the heap and isn't off-heap
+     * 
+     * @param g - Graph - the graph, with its candidate lists built
+     */
+    private void setUpCandidatePheromone(Graph g) {
+        if (candidatePheromone || (g.isTooLargeForHeap() && !g.isOffHeap())) {
+            g.setCandidatePheromone(true);
+        }
+    }
+
     /**
      * This initialises all the random pheromone amounts in the graph
      * 
      * @param g - Graph - the Graph for pheromone initialisation
      */
     public void initialisePheromone(Graph g) {
-        for (int i = 0; i < g.getAdjacencyMatrix()[0].length; i++) {
-            for (int j = 0; j < g.getAdjacencyMatrix().length; j++) {
-                if (g.getAdjacencyMatrix()[i][j] != null) {
-                    if (g.getAdjacencyMatrix()[i][j].getPheromone() == -1) {
+        int n = g.getNumCities();
+        int[] offsets = g.getPathOffsets();
+        int[] targets = g.getPathTargets();
+        for (int i = 0; i < n; i++) {
+            // When the pheromone is kept per path, only those paths need looking at
+            int first = offsets == null ? 0 : offsets[i];
+            int last = offsets == null ? n : offsets[i + 1];
+            for (int k = first; k < last; k++) {
+                int j = offsets == null ? k : targets[k];
+                if (g.hasPath(i, j)) {
+                    if (g.getPheromone(i, j) == -1) {
                         // There's a possibility that the pheromone would be 0, so to represent the
                         // uninitalised pheromone, it has to be -1
-                        double ph = Math.random();
-                        g.getAdjacencyMatrix()[i][j].setPheromone(ph);
-                        g.getAdjacencyMatrix()[j][i].setPheromone(ph);
+                        double ph = seedSource.nextDouble();
+                        g.setPheromone(i, j, ph);
+                        if (g.hasPath(j, i)) {
+                            g.setPheromone(j, i, ph);
+                        }
                         // Since the graph is undirected, it is symmetrical - [i][j]'s pheromone is the
                         // same as [j][i]'s
 
@@ -137,6 +440,22 @@ public class AntColonyOptimiser {
      *                                  wrong with picking a random city
      */
     public City getRandomCity(Graph g) throws IllegalArgumentException, IllegalStateException {
+        return getRandomCity(g, new Random());
+    }
+
+    /**
+     * This gets a random city for the Ant to start on, using the given random
+     * number generator
+     * 
+     * @param g - Graph - The graph with all the possible cities in
+     * @param r - Random - The random number generator to pick the city with
+     * @return City - The random city
+     * @throws IllegalArgumentException - If the graph is null, or the city list is
+     *                                  null/empty
+     * @throws IllegalStateException    - If something has gone catastrophically
+     *                                  wrong with picking a random city
+     */
+    public City getRandomCity(Graph g, Random r) throws IllegalArgumentException, IllegalStateException {
         if (g == null) {
             throw new IllegalArgumentException("Graph cannot be null");
         }
@@ -144,7 +463,7 @@ public class AntColonyOptimiser {
         if (cities == null || cities.isEmpty()) {
             throw new IllegalArgumentException("City list can't be null nor empty");
         }
-        int randomIndex = new Random().nextInt(cities.size());
+        int randomIndex = r.nextInt(cities.size());
         int i = 0;
         for (City c : cities) {
             if (i == randomIndex) {
@@ -158,15 +477,32 @@ public class AntColonyOptimiser {
     /**
      * Returns a nicely formatted string containing all the cities visited in order
      * 
-     * @param cl - ArrayList<City> - The list of cities, in order
+     * @param g    - Graph - The graph the cities belong to
+     * @param tour - int[] - The ids of the cities, in order
      * @return String - The formatted string
      */
-    public String printPath(ArrayList<City> cl) {
+    public String printPath(Graph g, int[] tour) {
         String retString = "Path: ";
-        for (int i = 0; i < cl.size() - 1; i++) {
-            retString += cl.get(i).getName() + " -> ";
+        for (int i = 0; i < tour.length - 1; i++) {
+            retString += g.getCity(tour[i]).getName() + " -> ";
+        }
+        retString += g.getCity(tour[tour.length - 1]).getName();
+        return retString;
+    }
+
+    /**
+     * This prints a path with the weights in between each node.
+     * This helps for verification of correct fitness evaluation.
+     * 
+     * @param g    - Graph - The graph the cities belong to
+     * @param tour - int[] - The ids of the cities, in order
+     * @return String - Concatenated list of cities + variables
+     */
+    public String printEdgePath(Graph g, int[] tour) {
+        String retString = g.getCity(tour[0]).getName();
+        for (int i = 0; i < tour.length - 1; i++) {
+            retString += "-[" + g.getWeight(tour[i], tour[i + 1]) + "]>" + g.getCity(tour[i + 1]).getName();
         }
-        retString += cl.get(cl.size() - 1).getName();
         return retString;
     }
 
@@ -192,121 +528,260 @@ public class AntColonyOptimiser {
      *                         found
      * @param viewBestEdgePath - boolean - if the user wishes to see the best path
      *                         found with weights
-     * @return double - the best fitness of the graph found.
+     * @return double - the best fitness of the graph found, or NO_TOUR if no ant
+     *         finished a whole tour
      */
     public double runAntColonySim(Graph graph, int numAnts, double evaporationRate, double alpha, double beta, double q,
             int terminationCount, boolean elitism, int rank, boolean viewBestPath, boolean viewBestEdgePath) {
 
-        // Intitalise the ant list
-        ArrayList<Ant> antColony = new ArrayList<Ant>();
+        // Intitalise the ant colony - the ants are created once and reset in place at
+        // the start of every iteration, rather than being thrown away
+        ParallelColony colony = new ParallelColony(graph, this, numAnts, threadCount, seedSource);
+        Ant[] antColony = colony.getAnts();
+        localSearch = null;
+        if (localSearchScope != LocalSearch.Scope.NONE && LocalSearch.canImprove(graph)) {
+            localSearch = new LocalSearch(graph);
+            localSearch.setMoves(localSearchMoves[LocalSearch.TWO_OPT], localSearchMoves[LocalSearch.OR_OPT],
+                    localSearchMoves[LocalSearch.THREE_OPT], localSearchMoves[LocalSearch.LIN_KERNIGHAN]);
+            colony.setLocalSearch(localSearch, localSearchScope);
+        }
 
         // Create the condition - after 10,000 fitness evaluations, terminate and return
         // the best fitness.
         int fitnessEvals = 0;
         double bestFitness = Double.MAX_VALUE;
 
-        Ant bestAnt = new Ant(null);
-        // This is an array list to make it easier for adding/deleting
-        ArrayList<Ant> rankedAnts = new ArrayList<Ant>();
-        ArrayList<City> bestPath = new ArrayList<City>();
+        // The best tour is copied out of the ant that found it, as the ant is reused
+        int[] bestPath = new int[0];
+        // The rank variation keeps the shortest tours found so far in a heap, which
+        // every ant's tour is offered to. It lasts the whole run, so the tours can
+        // come from any iteration, and each different tour is only kept once.
+        EliteHeap rankedPaths = new EliteHeap(Math.max(0, rank));
+        // The MAX-MIN Ant System's pheromone bounds are only known once there is a
+        // best tour, and its schedule counts the iterations since the best tour last
+        // improved and since the pheromone was last reset
+        boolean boundsSet = false;
+        int sinceImproved = 0;
+        int sinceRestart = 0;
+        restarts = 0;
+        // Work out how attractive each path is from the starting pheromone
+        colony.updateChoiceInfo(alpha, beta);
         while (fitnessEvals < terminationCount) {
 
-            // Create all the ants, randomise their start location, and add to the list
-            for (int i = 0; i < numAnts; i++) {
-                City startCity = getRandomCity(graph);
-                Ant newAnt = new Ant(startCity);
-                antColony.add(newAnt);
-            }
-            // For every ant in the colony
+            // Only run as many ants as there are fitness evaluations left
+            int antsRun = Math.min(numAnts, terminationCount - fitnessEvals);
+            // Build the tours on all the threads. Tour construction only reads the
+            // choice info, so the ants don't interfere with each other
+            colony.constructTours(antsRun);
+
+            // Then go through the ants in order on this thread, so the results are the
+            // same however the ants were split between the threads
             double localBestFitness = Double.MAX_VALUE;
-            for (int i = 0; i < antColony.size(); i++) {
-                Ant a = antColony.get(i);
-                // Calculate that Ant's path and fitness
-                a.calculatePath(graph.getCities(), alpha, beta);
-                double antFitness = a.calculateOverallFitness();
+            Ant localBest = null;
+            boolean improved = false;
+            for (int i = 0; i < antsRun; i++) {
+                Ant a = antColony[i];
+                double antFitness = a.getFitness();
                 // This y is used for graphing testing results
                 // sneaky way to double - saves a headache when graphing
                 // x.add(fitnessEvals * 1.0);
                 // y.add(bestFitness);
                 fitnessEvals++;
+                // An ant that got stuck on a sparse graph has a partial tour, which would
+                // look shorter than any real one
+                if (!a.isTourComplete()) {
+                    continue;
+                }
                 if (antFitness < localBestFitness) {
                     localBestFitness = antFitness;
+                    localBest = a;
+                }
+                // If the user has chosen to use the rank variation, see if this ant's path
+                // is one of the best so far
+                if (rank > 0) {
+                    rankedPaths.offer(antFitness, a);
                 }
                 // If the ant's fitness is better than the best fitness so far - we are
                 // minimising the fitness
                 if (antFitness < bestFitness) {
-                    // Make this ant the best ant, best path, and best fitness
+                    // Make this ant's path the best path, and its fitness the best fitness
                     bestFitness = antFitness;
+                    improved = true;
 
                     bestPath = a.getTourMemory();
-                    bestAnt = a;
-
-                    // If the user has chosen to use the rank variation, continue
-                    if (rank > 0) {
-
-                        if (rankedAnts.size() == 0) {
-                            rankedAnts.add(bestAnt);
-                        }
-                        // Iterate the list and slot in the ant in the correct slot
-                        for (int j = 0; j < rankedAnts.size(); j++) {
-                            if (rankedAnts.get(j).calculateOverallFitness() > bestFitness) {
-                                rankedAnts.add(j, bestAnt);
-                                break;
-                            }
-                        }
-                        // If the list size has gone over the rank, remove the worst Ant
-                        if (rankedAnts.size() > rank) {
-                            rankedAnts.remove(rankedAnts.size() - 1);
-                        }
-
-                    }
-
-                }
-
-                if (fitnessEvals >= terminationCount) {
-                    break;
                 }
 
             }
-            if (localBestFitness != Integer.MAX_VALUE) {
+            if (localBest != null) {
                 x.add(fitnessEvals * 1.0);
                 y.add(localBestFitness);
             }
-            // Updating the path
-            for (Ant a : antColony) {
-                // Inverse of the best fitness
-                a.increasePheromoneOnPath(q / bestFitness);
+            if (maxMin) {
+                if (bestPath.length == 0) {
+                    // No whole tour yet, so there are no bounds and nothing to deposit
+                    continue;
+                }
+                sinceImproved = improved ? 0 : sinceImproved + 1;
+                sinceRestart++;
+                // The upper bound is the most pheromone a path can build up to if the best
+                // tour lays on it every iteration
+                double tauMax = q / (evaporationRate * bestFitness);
+                if (!boundsSet || sinceImproved >= restartIterations) {
+                    // Every path starts at the upper bound, so the ants explore widely at
+                    // first. On stagnation, the pheromone is moved back towards it.
+                    if (boundsSet) {
+                        restarts++;
+                    }
+                    graph.smoothPheromone(tauMax, boundsSet ? smoothing : 1);
+                    boundsSet = true;
+                    sinceImproved = 0;
+                    sinceRestart = 0;
+                } else {
+                    graph.evaporatePaths(evaporationRate);
+                    int interval = globalBestInterval(sinceRestart);
+                    if (interval > 0 && sinceRestart % interval == 0) {
+                        graph.updatePheromoneOnTour(bestPath, q / bestFitness);
+                    } else if (localBest != null) {
+                        localBest.increasePheromoneOnPath(q / localBestFitness);
+                    } else {
+                        graph.updatePheromoneOnTour(bestPath, q / bestFitness);
+                    }
+                    graph.boundPheromone(maxMinLowerBound(tauMax, graph.getNumCities()), tauMax);
+                }
+                colony.updateChoiceInfo(alpha, beta);
+                // The plain Ant System's deposits, elitism and rank don't apply
+                continue;
             }
+            // Updating the path - every ant adds the inverse of the best fitness to the
+            // paths it used, split across the threads
+            colony.depositPheromone(antsRun, q / bestFitness);
 
             // Elitism gives the local best path additional pheromone to encourage using
             // those edges
             if (elitism) {
-                // increases the best path pheromone again for the best ant
-                bestAnt.increasePheromoneOnPath(q / bestFitness);
+                // increases the best path pheromone again for the best path
+                graph.updatePheromoneOnTour(bestPath, q / bestFitness);
             }
             // The rank system gives the top x ants' paths additional pheromone
             if (rank > 0) {
-                for (Ant ra : rankedAnts) {
-                    ra.increasePheromoneOnPath(q / bestFitness);
+                for (int j = 0; j < rankedPaths.size(); j++) {
+                    graph.updatePheromoneOnTour(rankedPaths.getTour(j), q / bestFitness);
                 }
             }
             // Evaporate all the paths
             graph.evaporatePaths(evaporationRate);
-            // Reset the antcolony - this way excessive memory isn't used.
-            antColony.clear();
+            // The pheromone has changed, so the choice info needs to be recomputed
+            colony.updateChoiceInfo(alpha, beta);
 
         }
+        colony.shutdown();
+        if (bestPath.length == 0) {
+            // Every ant got stuck, so there is no tour to show
+            if (viewBestPath || viewBestEdgePath) {
+                System.out.println("No complete tour was found");
+            }
+            return NO_TOUR;
+        }
         // If the user wants to see the path with or without the weights
         if (viewBestPath) {
-            System.out.println(printPath(bestPath));
+            System.out.println(printPath(graph, bestPath));
         }
         if (viewBestEdgePath) {
-            System.out.println(bestAnt.printEdgePath());
+            System.out.println(printEdgePath(graph, bestPath));
 
         }
         return bestFitness;
     }
 
+    /**
+     * Works out the MAX-MIN Ant System's lower pheromone bound from its upper
+     * bound. It is set so that, once the pheromone has converged, an ant builds
+     * the best tour again with a chance of MAX_MIN_P_BEST, choosing from about
+     * half the cities at each step.
+     * 
+     * @param tauMax    - double - the upper bound
+     * @param numCities - int - the number of cities in the graph
+     * @return double - the lower bound, no more than the upper bound
+     */
+    static double maxMinLowerBound(double tauMax, int numCities) {
+        double pDecision = Math.pow(MAX_MIN_P_BEST, 1.0 / numCities);
+        double avgChoices = Math.max(1, numCities / 2.0 - 1);
+        return Math.min(tauMax, tauMax * (1 - pDecision) / (avgChoices * pDecision));
+    }
+
+    /**
+     * Gets how often the best tour so far lays pheromone in the MAX-MIN Ant
+     * System, rather than the best tour of the iteration. Just after a restart the
+     * iteration's best is used, to explore, and the best so far is used more and
+     * more often as the search goes on.
+     * 
+     * @param iterations - int - the iterations since the pheromone was last reset
+     * @return int - every how many iterations the best so far is used, or 0 for
+     *         never
+     */
+    static int globalBestInterval(int iterations) {
+        if (iterations < 25) {
+            return 0;
+        }
+        if (iterations < 75) {
+            return 5;
+        }
+        if (iterations < 125) {
+            return 3;
+        }
+        if (iterations < 250) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * This compares compact mode against the normal mode, by running brazil58
+     * with the same seeds in each and timing it. The fitness evaluations per
+     * second show the speed of each, and the average and best tours show whether
+     * the lower precision costs anything.
+     */
+    public void runBenchmark() {
+        File brazilFile = new File("brazil58.xml");
+        int runs = 5;
+        int evaluations = 50000;
+        try {
+            // A run of each mode first, so the JIT has compiled both before timing
+            for (boolean mode : new boolean[] { false, true }) {
+                setCompact(mode);
+                setSeed(0);
+                Graph g = setUpGraph(brazilFile);
+                initialisePheromone(g);
+                runAntColonySim(g, 100, 0.5, 1, 2, 1, evaluations, true, 5, false, false);
+                clearXandY();
+            }
+            for (boolean mode : new boolean[] { false, true }) {
+                setCompact(mode);
+                long totalTime = 0;
+                double totalFitness = 0;
+                double bestFitness = Double.MAX_VALUE;
+                for (int seed = 1; seed <= runs; seed++) {
+                    setSeed(seed);
+                    Graph g = setUpGraph(brazilFile);
+                    initialisePheromone(g);
+                    long start = System.nanoTime();
+                    double fitness = runAntColonySim(g, 100, 0.5, 1, 2, 1, evaluations, true, 5, false, false);
+                    totalTime += System.nanoTime() - start;
+                    clearXandY();
+                    totalFitness += fitness;
+                    bestFitness = Math.min(bestFitness, fitness);
+                }
+                double seconds = totalTime / 1e9;
+                System.out.println((mode ? "Compact" : "Normal") + " mode: "
+                        + Math.round(runs * (double) evaluations / seconds) + " fitness evaluations per second, "
+                        + "average tour " + totalFitness / runs + ", best tour " + bestFitness);
+            }
+        } catch (Exception e) {
+            System.out.println(e.toString());
+        }
+        setCompact(false);
+    }
+
     /**
      * This method runs the tests and generates graphs out of the data derived
      */
@@ -319,13 +794,11 @@ public class AntColonyOptimiser {
         File brazilFile = new File("brazil58.xml");
         String[] datasetNames = new String[5];
         try {
-            Document burmaDocument = parseXML(burmaFile);
-            Document brazilDocument = parseXML(brazilFile);
-            Graph gBurma = setUpGraph(burmaDocument);
-            Graph gBurma2 = setUpGraph(burmaDocument);
-            Graph gBurma3 = setUpGraph(burmaDocument);
-            Graph gBurma4 = setUpGraph(burmaDocument);
-            Graph gBrazil = setUpGraph(brazilDocument);
+            Graph gBurma = setUpGraph(burmaFile);
+            Graph gBurma2 = setUpGraph(burmaFile);
+            Graph gBurma3 = setUpGraph(burmaFile);
+            Graph gBurma4 = setUpGraph(burmaFile);
+            Graph gBrazil = setUpGraph(brazilFile);
             // Base variables:
             // numAnts = 100, evaporation rate = 0.7, alpha = 0.5, beta =0.5, q = 1,
             // termination count = 10,000, elitism = false, rank = 0, view best path =
@@ -404,7 +877,7 @@ public class AntColonyOptimiser {
             double[][] numberOfFitnessEvalsPheromone = new double[10][10000];
             double[][] fitnessOverTimePheromone = new double[10][10000];
             String[] pheromoneLevels = new String[10];
-            Graph gBurmaP = setUpGraph(burmaDocument);
+            Graph gBurmaP = setUpGraph(burmaFile);
             initialisePheromone(gBurmaP);
 
             for (int i = 0; i < 10; i++) {
@@ -421,7 +894,7 @@ public class AntColonyOptimiser {
                 clearXandY();
                 pheromone += 0.1;
                 gBurmaP = null;
-                gBurmaP = setUpGraph(burmaDocument);
+                gBurmaP = setUpGraph(burmaFile);
                 initialisePheromone(gBurmaP);
 
             }
@@ -436,7 +909,7 @@ public class AntColonyOptimiser {
             double[][] numberOfFitnessEvalsAB = new double[10][10000];
             double[][] fitnessOverTimeAB = new double[10][10000];
             String[] ABRatios = new String[10];
-            Graph gBurmaAB = setUpGraph(burmaDocument);
+            Graph gBurmaAB = setUpGraph(burmaFile);
             initialisePheromone(gBurmaAB);
 
             for (int i = 0; i < 10; i++) {
@@ -455,7 +928,7 @@ public class AntColonyOptimiser {
                 alpha += 0.1;
                 beta -= 0.1;
                 gBurmaAB = null;
-                gBurmaAB = setUpGraph(burmaDocument);
+                gBurmaAB = setUpGraph(burmaFile);
                 initialisePheromone(gBurmaAB);
 
             }
@@ -467,7 +940,7 @@ public class AntColonyOptimiser {
             double[][] numberOfFitnessEvalsElite = new double[6][10000];
             double[][] fitnessOverTimeElite = new double[6][10000];
             String[] eliteVRankVNormal = new String[6];
-            Graph gBurmaElite = setUpGraph(burmaDocument);
+            Graph gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
             runAntColonySim(gBurmaElite, 100, 0.7, 0.5, 0.5, 1, 10000, true, 0, false, false);
 
@@ -483,7 +956,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormal[0] = "Elitism Approach: Burma";
             clearXandY();
             gBurmaElite = null;
-            gBurmaElite = setUpGraph(burmaDocument);
+            gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
             // Rank 5
             runAntColonySim(gBurmaElite, 100, 0.7, 0.5, 0.5, 1, 10000, false, 5, false, false);
@@ -500,7 +973,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormal[1] = "Rank Approach - 5: Burma";
             clearXandY();
             gBurmaElite = null;
-            gBurmaElite = setUpGraph(burmaDocument);
+            gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
             // Rank 10
             runAntColonySim(gBurmaElite, 100, 0.7, 0.5, 0.5, 1, 10000, false, 10, false, false);
@@ -517,7 +990,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormal[2] = "Rank Approach - 10: Burma";
             clearXandY();
             gBurmaElite = null;
-            gBurmaElite = setUpGraph(burmaDocument);
+            gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
 
             // Rank 20
@@ -535,7 +1008,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormal[3] = "Rank Approach - 20: Burma";
             clearXandY();
             gBurmaElite = null;
-            gBurmaElite = setUpGraph(burmaDocument);
+            gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
             // Rank 50
             runAntColonySim(gBurmaElite, 100, 0.7, 0.5, 0.5, 1, 10000, false, 50, false, false);
@@ -552,7 +1025,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormal[4] = "Rank Approach - 50: Burma";
             clearXandY();
             gBurmaElite = null;
-            gBurmaElite = setUpGraph(burmaDocument);
+            gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
             runAntColonySim(gBurmaElite, 100, 0.7, 0.5, 0.5, 1, 10000, false, 0, false, false);
 
@@ -568,7 +1041,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormal[5] = "Basic Approach: Burma";
             clearXandY();
             gBurmaElite = null;
-            gBurmaElite = setUpGraph(burmaDocument);
+            gBurmaElite = setUpGraph(burmaFile);
             initialisePheromone(gBurmaElite);
             displayResults("Elitism vs Rank vs Basic - Local Best - Burma",
                     "Elitism vs Rank vs Basic - Local Best - Burma", numberOfFitnessEvalsElite,
@@ -596,7 +1069,7 @@ public class AntColonyOptimiser {
 
             // Ant population = 10
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             double fitness2Br = runAntColonySim(gBrazil, 100, 0.7, 0.5, 0.5, 1, 10000, false, 0, false, false);
             antTestFitnessesBrazil.add(fitness2Br);
@@ -613,7 +1086,7 @@ public class AntColonyOptimiser {
             clearXandY();
             // Ant population = 100
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBurma3);
             double fitness3br = runAntColonySim(gBrazil, 1000, 0.7, 0.5, 0.5, 1, 10000, false, 0, false, false);
             antTestFitnessesBrazil.add(fitness3br);
@@ -630,7 +1103,7 @@ public class AntColonyOptimiser {
             clearXandY();
             // Ant population = 1,000
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             double fitness4br = runAntColonySim(gBrazil, 10000, 0.7, 0.5, 0.5, 1, 10000, false, 0, false, false);
             antTestFitnessesBrazil.add(fitness4br);
@@ -658,7 +1131,7 @@ public class AntColonyOptimiser {
             double[][] fitnessOverTimePheromonebr = new double[10][10000];
             String[] pheromoneLevelsbr = new String[10];
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
 
             for (int i = 0; i < 10; i++) {
@@ -675,7 +1148,7 @@ public class AntColonyOptimiser {
                 clearXandY();
                 pheromonebr += 0.1;
                 gBrazil = null;
-                gBrazil = setUpGraph(brazilDocument);
+                gBrazil = setUpGraph(brazilFile);
                 initialisePheromone(gBrazil);
 
             }
@@ -690,7 +1163,7 @@ public class AntColonyOptimiser {
             double[][] fitnessOverTimeABbr = new double[10][10000];
             String[] ABRatiosbr = new String[10];
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
 
             for (int i = 0; i < 10; i++) {
@@ -709,7 +1182,7 @@ public class AntColonyOptimiser {
                 alphabr += 0.1;
                 betabr -= 0.1;
                 gBrazil = null;
-                gBrazil = setUpGraph(brazilDocument);
+                gBrazil = setUpGraph(brazilFile);
                 initialisePheromone(gBrazil);
 
             }
@@ -722,7 +1195,7 @@ public class AntColonyOptimiser {
             double[][] fitnessOverTimeElitebr = new double[6][10000];
             String[] eliteVRankVNormalbr = new String[6];
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             runAntColonySim(gBrazil, 100, 0.7, 0.5, 0.5, 1, 10000, true, 0, false, false);
 
@@ -738,7 +1211,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormalbr[0] = "Elitism Approach: Brazil";
             clearXandY();
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             // Rank 5
             runAntColonySim(gBrazil, 100, 0.7, 0.5, 0.5, 1, 10000, false, 5, false, false);
@@ -755,7 +1228,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormalbr[1] = "Rank Approach - 5: Brazil";
             clearXandY();
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             // Rank 10
             runAntColonySim(gBrazil, 100, 0.7, 0.5, 0.5, 1, 10000, false, 10, false, false);
@@ -772,7 +1245,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormalbr[2] = "Rank Approach - 10: Brazil";
             clearXandY();
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
 
             // Rank 20
@@ -790,7 +1263,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormalbr[3] = "Rank Approach - 20: Brazil";
             clearXandY();
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             // Rank 50
             runAntColonySim(gBrazil, 100, 0.7, 0.5, 0.5, 1, 10000, false, 50, false, false);
@@ -807,7 +1280,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormalbr[4] = "Rank Approach - 50: Brazil";
             clearXandY();
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             runAntColonySim(gBrazil, 100, 0.7, 0.5, 0.5, 1, 10000, false, 0, false, false);
 
@@ -823,7 +1296,7 @@ public class AntColonyOptimiser {
             eliteVRankVNormalbr[5] = "Basic Approach: Brazil";
             clearXandY();
             gBrazil = null;
-            gBrazil = setUpGraph(brazilDocument);
+            gBrazil = setUpGraph(brazilFile);
             initialisePheromone(gBrazil);
             displayResults("Elitism vs Rank vs Basic - Local Best - Brazil",
                     "Elitism vs Rank vs Basic - Local Best - Brazil", numberOfFitnessEvalsElitebr,
@@ -858,18 +1331,32 @@ public class AntColonyOptimiser {
     public static void main(String[] args) {
         Scanner reader = new Scanner(System.in);
         boolean continuing = false;
-        if(args.length == 11){
+        if(args.length >= 11){
             AntColonyOptimiser aco1 = new AntColonyOptimiser();
             aco1.clearXandY();
             File acoFile = new File(args[0]);
-            Document doc1 = null;
             try{
-                doc1 = aco1.parseXML(acoFile);
+                // Anything after the 11 parameters is an optional name=value setting
+                for (int i = 11; i < args.length; i++) {
+                    aco1.applyOption(args[i]);
+                }
                 Graph runGraph = null;
-                runGraph = aco1.setUpGraph(doc1);
+                runGraph = aco1.setUpGraph(acoFile);
                 aco1.initialisePheromone(runGraph);
                 double fitnessTest = aco1.runAntColonySim(runGraph,Integer.parseInt(args[1]),Double.parseDouble(args[2]), Double.parseDouble(args[3]),Double.parseDouble(args[4]),Double.parseDouble(args[5]),Integer.parseInt(args[6]),Boolean.parseBoolean(args[7]),Integer.parseInt(args[8]),Boolean.parseBoolean(args[9]),Boolean.parseBoolean(args[10]));
-                System.out.println(fitnessTest);
+                System.out.println(fitnessTest == NO_TOUR ? "No complete tour was found" : fitnessTest);
+                if (runGraph.getDistanceMatrix() instanceof RowCachedDistanceMatrix) {
+                    RowCachedDistanceMatrix rowCache = (RowCachedDistanceMatrix) runGraph.getDistanceMatrix();
+                    System.out.println("Distance row cache: " + rowCache.getHits() + " hits, "
+                            + rowCache.getMisses() + " misses, " + rowCache.getEvictions() + " evictions");
+                }
+                if (aco1.maxMin) {
+                    System.out.println("MAX-MIN restarts: " + aco1.getRestarts());
+                }
+                if (aco1.getLocalSearch() != null) {
+                    System.out.print(aco1.getLocalSearch().getStatistics());
+                }
+                runGraph.close();
             } catch (Exception e){
                 System.out.print(e.toString());
             }
@@ -886,12 +1373,17 @@ public class AntColonyOptimiser {
                 aco.runTests();
                 break;
             }
+            if (input.equals("-2")) {
+                aco.runBenchmark();
+                break;
+            }
             File acoFile = new File(input);
-            Document doc = null;
 
+            // Setting up the graph
+            Graph testGraph = null;
             try {
-                doc = aco.parseXML(acoFile);
-            } catch (NullPointerException e) {
+                testGraph = aco.setUpGraph(acoFile);
+            } catch (FileNotFoundException e) {
                 System.out.println(
                         "Error reading the file. Please check your spelling - you must include the file extension.");
                 System.out.println("See full exception? Y/N");
@@ -899,14 +1391,6 @@ public class AntColonyOptimiser {
                     System.out.println(e.toString());
                 }
                 System.out.println("Please restart and try again.");
-            } catch (ParserConfigurationException e) {
-                System.out.println("There has been an issue in the configuration build. Please restart and try again.");
-                System.out.println("See full exception? Y/N");
-                if (reader.nextLine().equalsIgnoreCase("Y")) {
-                    System.out.println(e.toString());
-                }
-                System.out.println("Please restart and try again.");
-
             } catch (IOException e) {
                 System.out.println("An IO exception has been encountered reading this file.");
                 System.out.println("See full exception? Y/N");
@@ -915,7 +1399,7 @@ public class AntColonyOptimiser {
                 }
                 System.out.println("Please restart and try again.");
 
-            } catch (SAXException e) {
+            } catch (XMLStreamException e) {
                 System.out.println(
                         "There has been a parse error with the file. Please make sure it's formatted correctly.");
                 System.out.println("See full exception? Y/N");
@@ -925,7 +1409,7 @@ public class AntColonyOptimiser {
                 System.out.println("Please restart and try again.");
 
             } catch (IllegalArgumentException e) {
-                System.out.println("The file cannot be null.");
+                System.out.println("The XML file must contain \"vertex\" elements, each with \"edge\" elements.");
                 System.out.println("See full exception? Y/N");
                 if (reader.nextLine().equalsIgnoreCase("Y")) {
                     System.out.println(e.toString());
@@ -942,24 +1426,6 @@ public class AntColonyOptimiser {
 
             }
 
-            // Setting up the graph
-            Graph testGraph = null;
-            try {
-                testGraph = aco.setUpGraph(doc);
-            } catch (IllegalArgumentException e) {
-                System.out.println("The XML file must contain \"vertex\" elements.");
-                System.out.println("See full exception? Y/N");
-                if (reader.nextLine().equalsIgnoreCase("Y")) {
-                    System.out.println(e.toString());
-                }
-            } catch (Exception e) {
-                System.out.println("An unexpected error has occurred.");
-                System.out.println("See full exception? Y/N");
-                if (reader.nextLine().equalsIgnoreCase("Y")) {
-                    System.out.println(e.toString());
-                }
-            }
-
             // Initialise pheromone
             aco.initialisePheromone(testGraph);
             // Time to set up the ACO proper
@@ -1125,7 +1591,11 @@ public class AntColonyOptimiser {
             double bestFitness = aco.runAntColonySim(testGraph, numAnts, evaporationRate, alpha, beta, q, 10000,
                     elitism,
                     rank, bestPathPrint, bestPathEdgesPrint);
-            System.out.println("The best fitness found was " + bestFitness);
+            if (bestFitness == NO_TOUR) {
+                System.out.println("No complete tour was found - every ant got stuck without a path onwards");
+            } else {
+                System.out.println("The best fitness found was " + bestFitness);
+            }
 
             System.out.println("Would you like to try again? (Y/N)");
 
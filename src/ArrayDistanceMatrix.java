@@ -0,0 +1,92 @@
+package src;
+
+import java.util.Arrays;
+
+public class ArrayDistanceMatrix implements DistanceMatrix {
+    private int numCities;
+    // Stored row-major in one contiguous array, so the weight for [i][j] lives at
+    // i * numCities + j
+    private double[] weights;
+
+    /**
+     * Constructor - creates a square matrix with dimension n, where every weight
+     * starts as Graph.NO_PATH
+     * 
+     * @param n - int - the dimension of the matrix
+     */
+    public ArrayDistanceMatrix(int n) {
+        numCities = n;
+        weights = new double[arrayLength((long) n * n)];
+        Arrays.fill(weights, Graph.NO_PATH);
+    }
+
+    /**
+     * Checks that a matrix with this many entries fits in one Java array, rather
+     * than letting the int length overflow
+     * 
+     * @param entries - long - the number of entries in the matrix
+     * @return int - the array length
+     * @throws IllegalArgumentException - if the entries don't fit in an array
+     */
+    static int arrayLength(long entries) throws IllegalArgumentException {
+        if (entries > Graph.MAX_ARRAY_ENTRIES) {
+            throw new IllegalArgumentException(entries + " distances are too many for one array. Use a .tsp"
+                    + " file of coordinates, whose distances are worked out as they're needed, for graphs this large.");
+        }
+        return (int) entries;
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return weights[i * numCities + j];
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        // Both directions are stored separately, and may be set to different weights
+        return false;
+    }
+
+    /**
+     * Setter - sets the weight of the path between two cities
+     * 
+     * @param i - int - the origin city's id
+     * @param j - int - the destination city's id
+     * @param w - double - the weight
+     */
+    public void set(int i, int j, double w) {
+        weights[i * numCities + j] = w;
+    }
+
+    /**
+     * Getter - gets the row-major weights
+     * 
+     * @return double[] - the weights, [i][j] is at i * size() + j
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Changes the dimension of the matrix, keeping the weights that are still
+     * inside it. New entries are Graph.NO_PATH.
+     * 
+     * @param n - int - the new dimension of the matrix
+     */
+    public void resize(int n) {
+        double[] oldWeights = weights;
+        int oldSize = numCities;
+        weights = new double[arrayLength((long) n * n)];
+        Arrays.fill(weights, Graph.NO_PATH);
+        numCities = n;
+        int kept = Math.min(oldSize, n);
+        for (int i = 0; i < kept; i++) {
+            System.arraycopy(oldWeights, i * oldSize, weights, i * n, kept);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package src;
+
+public class ArrayTour implements Tour {
+    private int numCities;
+    // The cities in order, and where each city is in it, so a city's neighbours
+    // in the tour are found straight away
+    private int[] tour;
+    private int[] pos;
+
+    /**
+     * Constructor - creates an empty tour of a number of cities, to be filled in
+     * by load
+     * 
+     * @param n - int - the number of cities
+     */
+    public ArrayTour(int n) {
+        numCities = n;
+        tour = new int[n];
+        pos = new int[n];
+    }
+
+    @Override
+    public void load(int[] cities) {
+        for (int i = 0; i < numCities; i++) {
+            tour[i] = cities[i];
+            pos[cities[i]] = i;
+        }
+    }
+
+    @Override
+    public void store(int[] cities, int start) {
+        int p = pos[start];
+        for (int i = 0; i < numCities; i++) {
+            cities[i] = tour[p];
+            p = p + 1 == numCities ? 0 : p + 1;
+        }
+    }
+
+    @Override
+    public int getNumCities() {
+        return numCities;
+    }
+
+    /**
+     * Getter - gets where a city is in the tour
+     * 
+     * @param c - int - the city
+     * @return int - its position, from 0
+     */
+    public int getPosition(int c) {
+        return pos[c];
+    }
+
+    @Override
+    public int next(int c) {
+        int p = pos[c] + 1;
+        return tour[p == numCities ? 0 : p];
+    }
+
+    @Override
+    public int prev(int c) {
+        int p = pos[c] - 1;
+        return tour[p < 0 ? numCities - 1 : p];
+    }
+
+    @Override
+    public boolean between(int a, int b, int c) {
+        int toB = pos[b] - pos[a];
+        if (toB < 0) {
+            toB += numCities;
+        }
+        int toC = pos[c] - pos[a];
+        if (toC < 0) {
+            toC += numCities;
+        }
+        return toB <= toC;
+    }
+
+    /**
+     * Reverses the part of the tour from one city forwards to another. If that is
+     * more than half the tour, the rest of the tour is reversed instead. Either
+     * way, every city moved is swapped with another, so it takes time in
+     * proportion to the length of the part reversed.
+     * 
+     * @param from - int - the first city of the part
+     * @param to   - int - the last city of the part
+     */
+    @Override
+    public void reverse(int from, int to) {
+        int i = pos[from];
+        int j = pos[to];
+        int length = j - i;
+        if (length < 0) {
+            length += numCities;
+        }
+        length++;
+        if (length * 2 > numCities) {
+            i = j + 1 == numCities ? 0 : j + 1;
+            j = pos[from] == 0 ? numCities - 1 : pos[from] - 1;
+            length = numCities - length;
+        }
+        for (int swaps = length / 2; swaps > 0; swaps--) {
+            int ci = tour[i];
+            int cj = tour[j];
+            tour[i] = cj;
+            pos[cj] = i;
+            tour[j] = ci;
+            pos[ci] = j;
+            i = i + 1 == numCities ? 0 : i + 1;
+            j = j == 0 ? numCities - 1 : j - 1;
+        }
+    }
+}
@@ -1,30 +1,20 @@
 package src;
 
-import java.util.ArrayList;
-
 public class City {
     private String cityName;
-    private ArrayList<Edge> paths;
+    private int id;
 
     /**
-     * Constructor - takes in the name and initialises path list
-     * 
-     * @param name     - String - City name
-     * @param pathList - ArrayList<Edge> - Associated edges list
-     */
-    public City(String name, ArrayList<Edge> pathList) {
-        cityName = name;
-        paths = pathList;
-    }
-
-    /**
-     * Constructor - takes in name only, and creates an empty pathList
+     * Constructor - takes in the name of the city and its id. The id is the
+     * city's row and column in the Graph's matrices, and the paths leaving the city
+     * are held in the Graph's weight matrix
      * 
      * @param name - String - City name
+     * @param i    - int - City id
      */
-    public City(String name) {
+    public City(String name, int i) {
         cityName = name;
-        paths = new ArrayList<Edge>();
+        id = i;
     }
 
     /**
@@ -37,89 +27,34 @@ public class City {
     }
 
     /**
-     * Adds new paths to the city
-     * 
-     * @param newPaths - ArrayList<Edge> - list of paths to be added
-     */
-    public void addPaths(ArrayList<Edge> newPaths) {
-        paths.addAll(newPaths);
-    }
-
-    /**
-     * Adds a single Edge to the path list
-     * 
-     * @param e - Edge - The edge to be added
-     */
-    public void addPath(Edge e) {
-        paths.add(e);
-    }
-
-    /**
-     * Getter - gets the list of paths
-     * 
-     * @return ArrayList<Edge> - the paths of the city
-     */
-    public ArrayList<Edge> getPaths() {
-        return paths;
-    }
-
-    /**
-     * Checks if a path exists between this city and another
-     * 
-     * @param name - String - The city to check
-     * @return int - The index in the list
-     */
-    public int containsCity(String name) {
-        for (int i = 0; i < paths.size(); i++) {
-            if (paths.get(i).getDestination().getName() == name) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
-    /**
-     * Gets the weight for a specific city to city connection
+     * Getter - Gets the name of the city
      * 
-     * @param name - String - The city to check
-     * @return double - The weight of an edge
+     * @return String - The name of the city
      */
-    public double getWeightForEdge(String name) {
-
-        if (name == null) {
-            System.out.println("Destination Name Null.");
-            return -1;
-        } else if (containsCity(name) == -1) {
-            System.out.println("There is no path connecting city " + this.cityName + " with " + name);
-            return -1;
-        } else {
-            int edgeIndex = containsCity(name);
-            Edge e = paths.get(edgeIndex);
-            double returnWeight = e.getWeight();
-            return returnWeight;
-        }
+    public String getName() {
+        return cityName;
     }
 
     /**
-     * Getter - Gets the name of the city
+     * Getter - Gets the id of the city
      * 
-     * @return String - The name of the city
+     * @return int - The id of the city, its index in the Graph
      */
-    public String getName() {
-        return cityName;
+    public int getId() {
+        return id;
     }
 
     /**
-     * toString - Returns the city name and number of paths nicely formatted
+     * toString - Returns the city name nicely formatted
      * 
-     * @return String - The name + paths nicely formatted
+     * @return String - The name nicely formatted
      */
     public String toString() {
-        return cityName + " is connected to " + paths.size() + " other cities.";
+        return "City " + cityName;
     }
 
     /**
-     * The equals override - If a city's name matches, then it's also a match.
+     * The equals override - If a city's id matches, then it's also a match.
      * 
      * @param o - Object - The object to compare this City to
      * @return boolean - Whether or not the two objects are matches
@@ -132,6 +67,16 @@ public class City {
         if (o == null || o.getClass() != this.getClass()) {
             return false;
         }
-        return ((City) o).getName().equals(this.cityName);
+        return ((City) o).getId() == this.id;
+    }
+
+    /**
+     * The hashCode override - matches the equals override
+     * 
+     * @return int - The hash of the city, its id
+     */
+    @Override
+    public int hashCode() {
+        return id;
     }
 }
@@ -0,0 +1,110 @@
+package src;
+
+public class CoordinateDistanceMatrix implements DistanceMatrix {
+    /**
+     * The TSPLIB edge weight types that can be worked out from coordinates
+     */
+    public enum Type {
+        EUC_2D, CEIL_2D, GEO, ATT
+    }
+
+    // TSPLIB's values for pi and the radius of the earth, used for GEO distances
+    private static final double PI = 3.141592;
+    private static final double EARTH_RADIUS = 6378.388;
+
+    private int numCities;
+    private Type type;
+    // Only the coordinates are kept, and each distance is worked out when it is
+    // asked for. For GEO these are the latitudes and longitudes in radians.
+    private double[] x;
+    private double[] y;
+
+    /**
+     * Constructor - takes in the coordinates of the cities, as they appear in the
+     * file
+     * 
+     * @param t  - Type - how the distances are worked out
+     * @param xs - double[] - each city's x coordinate (latitude for GEO)
+     * @param ys - double[] - each city's y coordinate (longitude for GEO)
+     */
+    public CoordinateDistanceMatrix(Type t, double[] xs, double[] ys) {
+        type = t;
+        numCities = xs.length;
+        if (t == Type.GEO) {
+            x = new double[numCities];
+            y = new double[numCities];
+            for (int i = 0; i < numCities; i++) {
+                x[i] = toRadians(xs[i]);
+                y[i] = toRadians(ys[i]);
+            }
+        } else {
+            x = xs;
+            y = ys;
+        }
+    }
+
+    /**
+     * Converts a TSPLIB GEO coordinate (degrees and minutes, as DDD.MM) to
+     * radians
+     * 
+     * @param c - double - the coordinate
+     * @return double - the coordinate in radians
+     */
+    private static double toRadians(double c) {
+        double degrees = (int) c;
+        double minutes = c - degrees;
+        return PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+
+    /**
+     * Getter - gets how the distances are worked out
+     * 
+     * @return Type - the TSPLIB edge weight type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            // There is no path from a city to itself
+            return Graph.NO_PATH;
+        }
+        switch (type) {
+            case EUC_2D: {
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                return (int) (Math.sqrt(dx * dx + dy * dy) + 0.5);
+            }
+            case CEIL_2D: {
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                return Math.ceil(Math.sqrt(dx * dx + dy * dy));
+            }
+            case ATT: {
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                double r = Math.sqrt((dx * dx + dy * dy) / 10.0);
+                int t = (int) (r + 0.5);
+                return t < r ? t + 1 : t;
+            }
+            default: {
+                double q1 = Math.cos(y[i] - y[j]);
+                double q2 = Math.cos(x[i] - x[j]);
+                double q3 = Math.cos(x[i] + x[j]);
+                return (int) (EARTH_RADIUS * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+            }
+        }
+    }
+}
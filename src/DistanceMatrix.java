@@ -0,0 +1,29 @@
+package src;
+
+public interface DistanceMatrix {
+
+    /**
+     * Getter - gets the number of rows (and columns) in the matrix
+     * 
+     * @return int - the number of cities
+     */
+    int size();
+
+    /**
+     * Getter - gets the weight of the path between two cities
+     * 
+     * @param i - int - the origin city's id
+     * @param j - int - the destination city's id
+     * @return double - the weight, or Graph.NO_PATH if there isn't one
+     */
+    double get(int i, int j);
+
+    /**
+     * Checks whether the matrix is known to be symmetric - the weight from i to j
+     * is always the same as from j to i
+     * 
+     * @return boolean - true if the matrix is symmetric by construction, false if
+     *         it may not be
+     */
+    boolean isSymmetric();
+}
@@ -0,0 +1,222 @@
+package src;
+
+import java.util.HashMap;
+
+public class EliteHeap {
+    // A max-heap on tour length, so the worst of the kept tours is always at the
+    // root and is the one replaced when a shorter tour comes along. Entry i's
+    // children are at 2i + 1 and 2i + 2.
+    //
+    // The heap lasts for a whole run rather than being emptied each iteration, so
+    // it holds the shortest tours found so far by any ant. Once the colony has
+    // converged, most ants build the same few tours, so each tour is only kept
+    // once - otherwise a single tour could fill the heap and get all of the rank
+    // pheromone.
+    private double[] lengths;
+    private int[][] tours;
+    // A hash of each kept tour's paths, for spotting a tour that is already kept
+    private long[] hashes;
+    // Where in the heap the tour with each hash is, kept up to date as entries
+    // move, so a repeated tour is found without looking through every entry. If
+    // two different kept tours ever share a hash, only the first is in here.
+    private HashMap<Long, Integer> slotOfHash;
+    private int size;
+
+    /**
+     * Constructor - creates an empty heap that keeps at most capacity tours
+     * 
+     * @param capacity - int - the most tours to keep
+     */
+    public EliteHeap(int capacity) {
+        lengths = new double[capacity];
+        tours = new int[capacity][];
+        hashes = new long[capacity];
+        slotOfHash = new HashMap<>();
+        size = 0;
+    }
+
+    /**
+     * Getter - gets the number of tours kept
+     * 
+     * @return int - the number of tours
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter - gets a kept tour. The tours aren't in order of length.
+     * 
+     * @param i - int - which tour, from 0 to size() - 1
+     * @return int[] - the ids of the cities in the tour, in order
+     */
+    public int[] getTour(int i) {
+        return tours[i];
+    }
+
+    /**
+     * Getter - gets the length of a kept tour
+     * 
+     * @param i - int - which tour, from 0 to size() - 1
+     * @return double - the length of the tour
+     */
+    public double getLength(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Offers an ant's finished tour to the heap. It is kept if the heap isn't
+     * full, or if it is shorter than the longest tour kept, which is then dropped
+     * - unless the same tour is already kept. The tour is only copied out of the
+     * ant if it is kept.
+     * 
+     * @param length - double - the length of the ant's tour
+     * @param a      - Ant - the ant
+     * @return boolean - whether the tour was kept
+     */
+    public boolean offer(double length, Ant a) {
+        if (lengths.length == 0 || (size == lengths.length && length >= lengths[0])) {
+            return false;
+        }
+        boolean symmetric = a.graph.isSymmetric();
+        long hash = hashTour(a.tourMemory, a.tourSize, symmetric);
+        Integer kept = slotOfHash.get(hash);
+        // The lengths aren't compared, as the same tour added up from another city
+        // can come out a rounding error apart
+        if (kept != null && sameTour(tours[kept], a.tourMemory, a.tourSize, symmetric)) {
+            return false;
+        }
+        if (size < lengths.length) {
+            // Add it at the bottom, and move it up past any shorter parents
+            int i = size;
+            size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (lengths[parent] >= length) {
+                    break;
+                }
+                move(parent, i);
+                i = parent;
+            }
+            place(i, length, a.getTourMemory(), hash);
+            return true;
+        }
+        // Replace the longest tour at the root, and move the new one down past any
+        // longer children
+        int[] tour = a.getTourMemory();
+        slotOfHash.remove(hashes[0], 0);
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && lengths[child + 1] > lengths[child]) {
+                child++;
+            }
+            if (lengths[child] <= length) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        place(i, length, tour, hash);
+        return true;
+    }
+
+    /**
+     * Moves a kept tour to another entry of the heap, overwriting it
+     * 
+     * @param from - int - the entry the tour is in
+     * @param to   - int - the entry to move it to
+     */
+    private void move(int from, int to) {
+        lengths[to] = lengths[from];
+        tours[to] = tours[from];
+        hashes[to] = hashes[from];
+        slotOfHash.replace(hashes[to], from, to);
+    }
+
+    /**
+     * Puts a new tour in an entry of the heap
+     * 
+     * @param i      - int - the entry
+     * @param length - double - the length of the tour
+     * @param tour   - int[] - the ids of the cities in the tour, in order
+     * @param hash   - long - the hash of the tour's paths
+     */
+    private void place(int i, double length, int[] tour, long hash) {
+        lengths[i] = length;
+        tours[i] = tour;
+        hashes[i] = hash;
+        slotOfHash.putIfAbsent(hash, i);
+    }
+
+    /**
+     * Hashes the paths of a closed tour, ignoring which city it starts from (and,
+     * on a symmetric graph, which way round it goes), as those lay pheromone on
+     * exactly the same paths
+     * 
+     * @param tour      - int[] - the ids of the cities in the tour, in order,
+     *                  ending with the first again
+     * @param size      - int - how many entries of tour are used
+     * @param symmetric - boolean - whether a path is the same both ways round
+     * @return long - the hash
+     */
+    static long hashTour(int[] tour, int size, boolean symmetric) {
+        long hash = 0;
+        for (int i = 0; i < size - 1; i++) {
+            int from = tour[i];
+            int to = tour[i + 1];
+            if (symmetric && from > to) {
+                from = to;
+                to = tour[i];
+            }
+            // Summed, so the order of the paths doesn't matter, with each path mixed
+            // first so different sets of paths rarely have the same sum
+            long h = ((long) from << 32 | to) * 0x9E3779B97F4A7C15L;
+            hash += h ^ (h >>> 29);
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether two closed tours are the same cycle, whichever city each
+     * starts from (and, on a symmetric graph, whichever way round each goes)
+     * 
+     * @param kept      - int[] - a kept tour, ending with its first city again
+     * @param tour      - int[] - the other tour, ending with its first city again
+     * @param size      - int - how many entries of tour are used
+     * @param symmetric - boolean - whether a path is the same both ways round
+     * @return boolean - whether they are the same cycle
+     */
+    static boolean sameTour(int[] kept, int[] tour, int size, boolean symmetric) {
+        if (kept.length != size || size < 2) {
+            return kept.length == size;
+        }
+        // The cycle, without the first city repeated at the end
+        int m = size - 1;
+        int start = -1;
+        for (int i = 0; i < m && start == -1; i++) {
+            if (tour[i] == kept[0]) {
+                start = i;
+            }
+        }
+        if (start == -1) {
+            return false;
+        }
+        boolean forwards = true;
+        for (int k = 1; k < m && forwards; k++) {
+            forwards = kept[k] == tour[(start + k) % m];
+        }
+        if (forwards || !symmetric) {
+            return forwards;
+        }
+        for (int k = 1; k < m; k++) {
+            if (kept[k] != tour[(start - k + m) % m]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
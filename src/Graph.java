@@ -1,12 +1,109 @@
 package src;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 
 public class Graph {
+    /**
+     * The weight stored for a pair of cities with no path between them (such as a
+     * city and itself)
+     */
+    public static final double NO_PATH = -1;
+    // The smallest weight used when working out how attractive a path is
+    private static final double MIN_WEIGHT = 1e-10;
+    // In lazy evaporation mode, the smallest the shared pheromone scale gets before
+    // it is applied to every path, so the stored values (and their powers, in the
+    // choice info) stay well inside the range of a double, or of a float
+    private static final double MIN_DOUBLE_SCALE = 1e-30;
+    private static final double MIN_FLOAT_SCALE = 1e-4;
+    /**
+     * The most entries a Java array can hold. A full matrix on the heap can't have
+     * more, so a graph with more than about 46,000 cities needs its pheromone kept
+     * per candidate path, or held off the heap.
+     */
+    public static final long MAX_ARRAY_ENTRIES = Integer.MAX_VALUE - 8;
+
     private ArrayList<City> cities;
     // this needs to be an arraylist bc i need to get values from it. implement
     // duplicate checking
-    private Edge[][] adjacencyMatrix;
+    private int numCities;
+    // The weights can be held in an array, or mapped from a cache file. The
+    // pheromone is stored row-major in one contiguous array, so the value for
+    // [i][j] (from the city with id i to the city with id j) lives at
+    // i * numCities + j. This keeps a row of the matrix together in
+    // memory rather than scattered over the heap as individual objects.
+    // If the weights are symmetric, [i][j] and [j][i] are the same path, so the
+    // pheromone only stores the upper triangle (see PackedDistanceMatrix) and
+    // each path is evaporated and deposited on once.
+    private DistanceMatrix distances;
+    private boolean symmetric;
+    private double[] pheromoneMatrix;
+    // heuristicMatrix holds (1 / weight)^beta for every path, which only changes
+    // with beta, and is laid out like the pheromone. choiceInfoMatrix holds
+    // pheromone^alpha * heuristic for every path, always as full rows, and is
+    // recomputed whenever the pheromone changes, so building a tour only has to
+    // read it.
+    private double[] heuristicMatrix;
+    private double heuristicBeta;
+    private double[] choiceInfoMatrix;
+    // In compact mode the three matrices above are held as floats instead, in the
+    // arrays below, and the double arrays are null. This halves the memory read
+    // when evaporating and building tours.
+    private boolean compact;
+    private float[] compactPheromoneMatrix;
+    private float[] compactHeuristicMatrix;
+    private float[] compactChoiceInfoMatrix;
+    // In off-heap mode the three matrices are held outside the Java heap instead
+    // (as floats if also in compact mode), and all the arrays above are null
+    private boolean offHeap;
+    private OffHeapMatrix offHeapPheromoneMatrix;
+    private OffHeapMatrix offHeapHeuristicMatrix;
+    private OffHeapMatrix offHeapChoiceInfoMatrix;
+    // Set if the weights are held as sparse rows, as not every city has a path to
+    // every other. Then the pheromone, heuristic and choice info are float arrays
+    // with one entry per path rather than per pair of cities (see
+    // SparseDistanceMatrix), and neither compact nor off-heap mode can be changed.
+    private SparseDistanceMatrix sparseDistances;
+    // In candidate pheromone mode, the pheromone is only kept for the paths in each
+    // city's candidate list, so it takes n * k entries rather than n^2. It is held
+    // per path like a sparse graph's, and a path that isn't listed has none.
+    private boolean candidatePheromone;
+    // The paths the pheromone is kept for, when it is kept per path (on a sparse
+    // graph, or in candidate pheromone mode). The paths out of city i are at
+    // [pathOffsets[i], pathOffsets[i + 1]) of pathTargets, and pathSlots is where
+    // each one's pheromone is - a symmetric graph shares one slot between the two
+    // directions of a path, when both are stored. Null when the pheromone is a
+    // full matrix.
+    private int[] pathOffsets;
+    private int[] pathTargets;
+    private int[] pathSlots;
+    private int maxPathDegree;
+    // In lazy evaporation mode the pheromone matrices hold each path's pheromone
+    // divided by pheromoneScale, so evaporating every path is just shrinking the
+    // scale. Since the scale is shared by every path, it cancels out of the
+    // roulette wheel, so the choice info is worked out from the stored values and
+    // only the entries of paths deposited on need working out again. Those paths
+    // are listed in dirtyFrom and dirtyTo, with dirty marking their pheromone
+    // indices so none is listed twice.
+    private boolean lazyEvaporation;
+    private double pheromoneScale = 1;
+    private BitSet dirty;
+    private int[] dirtyFrom = new int[0];
+    private int[] dirtyTo = new int[0];
+    private int numDirty;
+    // Set when every choice info entry needs working out again, such as after the
+    // stored values are rescaled
+    private boolean choiceInfoStale = true;
+    private double choiceInfoAlpha;
+    // The pheromone matrix is only created when it's first used, so the mode it is
+    // created in can be chosen after the weights are loaded
+    private boolean pheromoneAllocated;
+    // The candidate list of city i is the ids of its nearest neighbours, closest
+    // first, stored at [i * candidateListSize, (i + 1) * candidateListSize). Rows
+    // with fewer reachable cities than that are padded with -1.
+    private int[] candidateLists;
+    private int candidateListSize;
 
     /**
      * Constructor - initialises the cities list to an empty ArrayList
@@ -44,67 +141,1141 @@ public class Graph {
     }
 
     /**
-     * Creates a new square adjacency matrix with dimension i
+     * Getter - gets a city by its id
+     * 
+     * @param id - int - the id of the city, its row and column in the matrices
+     * @return City - the city with that id
+     */
+    public City getCity(int id) {
+        return cities.get(id);
+    }
+
+    /**
+     * Creates new square weight and pheromone matrices with dimension i. Every
+     * weight starts as NO_PATH and every pheromone as -1 (uninitialised)
      * 
      * @param i - int - the dimension of the matrix
      */
     public void setAdjacencyMatrix(int i) {
-        adjacencyMatrix = new Edge[i][i];
+        setDistanceMatrix(new ArrayDistanceMatrix(i));
+    }
+
+    /**
+     * Setter - sets the weights of the paths between the cities. A pheromone
+     * matrix to match, where every pheromone is -1 (uninitialised), is created
+     * when it is first used. The pheromone is packed if the weights are symmetric.
+     * 
+     * @param d - DistanceMatrix - the weights
+     */
+    public void setDistanceMatrix(DistanceMatrix d) {
+        distances = d;
+        numCities = d.size();
+        symmetric = d.isSymmetric();
+        sparseDistances = d instanceof SparseDistanceMatrix ? (SparseDistanceMatrix) d : null;
+        candidatePheromone = false;
+        pathOffsets = null;
+        pathTargets = null;
+        pathSlots = null;
+        maxPathDegree = 0;
+        if (sparseDistances != null) {
+            compact = true;
+            offHeap = false;
+            pathOffsets = sparseDistances.getOffsets();
+            pathTargets = sparseDistances.getTargets();
+            pathSlots = sparseDistances.getPheromoneSlots();
+            maxPathDegree = sparseDistances.getMaxDegree();
+        }
+        resetPheromone();
+        candidateLists = null;
+        candidateListSize = 0;
+    }
+
+    /**
+     * Throws away the pheromone, heuristic and choice info matrices. The pheromone
+     * is created again, as -1 (uninitialised), the next time it's used.
+     */
+    private void resetPheromone() {
+        pheromoneMatrix = null;
+        heuristicMatrix = null;
+        choiceInfoMatrix = null;
+        compactPheromoneMatrix = null;
+        compactHeuristicMatrix = null;
+        compactChoiceInfoMatrix = null;
+        closeOffHeapMatrices();
+        pheromoneAllocated = false;
+        pheromoneScale = 1;
+        dirty = null;
+        numDirty = 0;
+        choiceInfoStale = true;
+    }
+
+    /**
+     * Creates the pheromone matrix, in the current mode, if it hasn't been yet
+     */
+    private void allocatePheromone() {
+        if (pheromoneAllocated) {
+            return;
+        }
+        if (offHeap) {
+            offHeapPheromoneMatrix = OffHeapMatrix.allocate(pheromoneSize(), compact);
+            offHeapPheromoneMatrix.fill(-1);
+        } else if (compact) {
+            checkFitsOnHeap();
+            compactPheromoneMatrix = new float[(int) pheromoneSize()];
+            Arrays.fill(compactPheromoneMatrix, -1);
+        } else {
+            checkFitsOnHeap();
+            pheromoneMatrix = new double[(int) pheromoneSize()];
+            Arrays.fill(pheromoneMatrix, -1);
+        }
+        pheromoneAllocated = true;
+    }
+
+    /**
+     * Checks that the matrices fit in Java arrays. The choice info is always a full
+     * n by n matrix, unless the pheromone is kept per path.
+     * 
+     * @throws IllegalStateException - if there are too many cities
+     */
+    private void checkFitsOnHeap() throws IllegalStateException {
+        if (pathOffsets == null && (long) numCities * numCities > MAX_ARRAY_ENTRIES) {
+            throw new IllegalStateException(numCities + " cities are too many for a full pheromone matrix on the"
+                    + " Java heap. Use candidate lists (candidates=k, with candidatepheromone=true) or off-heap mode.");
+        }
+    }
+
+    /**
+     * Frees the off-heap matrices, if there are any
+     */
+    private void closeOffHeapMatrices() {
+        for (OffHeapMatrix m : new OffHeapMatrix[] { offHeapPheromoneMatrix, offHeapHeuristicMatrix,
+                offHeapChoiceInfoMatrix }) {
+            if (m != null) {
+                m.close();
+            }
+        }
+        offHeapPheromoneMatrix = null;
+        offHeapHeuristicMatrix = null;
+        offHeapChoiceInfoMatrix = null;
+    }
+
+    /**
+     * Setter - switches off-heap mode on or off. In off-heap mode the pheromone,
+     * heuristic and choice info are held outside the Java heap, as are the weights
+     * if they were held in an array - so a huge graph doesn't grow the heap, or the
+     * time garbage collection takes. Weights mapped from a cache are already
+     * outside the heap, and are shared rather than copied. The pheromone is reset
+     * to -1 (uninitialised), so this should be called before it is initialised,
+     * and close should be called once the graph is finished with.
+     * 
+     * @param o - boolean - whether to use off-heap mode
+     */
+    public void setOffHeap(boolean o) {
+        offHeap = o && pathOffsets == null;
+        resetPheromone();
+        if (o && (distances instanceof ArrayDistanceMatrix || distances instanceof PackedDistanceMatrix
+                || distances instanceof IntDistanceMatrix)) {
+            distances = OffHeapDistanceMatrix.copyOf(distances);
+        }
+    }
+
+    /**
+     * Setter - switches lazy evaporation on or off. With it on, evaporation only
+     * changes one shared scale rather than every path's pheromone, and after
+     * pheromone is deposited only the choice info of the paths deposited on is
+     * worked out again - so an iteration costs as much as the paths the ants use,
+     * rather than every pair of cities. The pheromone is reset to -1
+     * (uninitialised), so this should be called before it is initialised.
+     * 
+     * @param l - boolean - whether to use lazy evaporation
+     */
+    public void setLazyEvaporation(boolean l) {
+        lazyEvaporation = l;
+        resetPheromone();
+    }
+
+    /**
+     * Getter - gets whether the graph evaporates its pheromone lazily
+     * 
+     * @return boolean - true if evaporation only changes a shared scale
+     */
+    public boolean isLazyEvaporation() {
+        return lazyEvaporation;
+    }
+
+    /**
+     * Getter - gets whether the graph is in off-heap mode
+     * 
+     * @return boolean - true if the matrices are held outside the Java heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Frees the memory held outside the Java heap straight away, rather than
+     * waiting for garbage collection. The graph can't be used afterwards.
+     */
+    public void close() {
+        closeOffHeapMatrices();
+        if (distances instanceof OffHeapDistanceMatrix) {
+            ((OffHeapDistanceMatrix) distances).getWeights().close();
+        }
+    }
+
+    /**
+     * Setter - switches between compact mode, where the pheromone, heuristic and
+     * choice info are floats and whole-number weights are ints, and the normal
+     * mode where they're all doubles. The pheromone is reset to -1
+     * (uninitialised), so this should be called before it is initialised.
+     * 
+     * @param c - boolean - whether to use compact mode
+     * @return boolean - whether the weights are held as ints. They're left alone if
+     *         they aren't all whole numbers, or are mapped from a cache or worked
+     *         out from coordinates.
+     */
+    public boolean setCompact(boolean c) {
+        compact = c || pathOffsets != null;
+        resetPheromone();
+        if (c && (distances instanceof ArrayDistanceMatrix || distances instanceof PackedDistanceMatrix)
+                && IntDistanceMatrix.isIntegral(distances)) {
+            distances = new IntDistanceMatrix(distances);
+        }
+        return distances instanceof IntDistanceMatrix;
+    }
+
+    /**
+     * Getter - gets whether the graph is in compact mode
+     * 
+     * @return boolean - true if the pheromone, heuristic and choice info are floats
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Getter - gets whether the weights are held as sparse rows
+     * 
+     * @return boolean - true if only the paths that exist are stored
+     */
+    public boolean isSparse() {
+        return sparseDistances != null;
+    }
+
+    /**
+     * Setter - switches candidate pheromone mode on or off. In candidate pheromone
+     * mode the pheromone, heuristic and choice info are only kept for the paths in
+     * each city's candidate list, as floats, so they take n * k entries rather than
+     * n^2 - which is what lets a graph of more than about 46,000 cities fit on the
+     * heap. Paths that aren't listed carry no pheromone, and are only used when
+     * every listed city has been visited. The candidate lists must be built first.
+     * The pheromone is reset to -1 (uninitialised), so this should be called
+     * before it is initialised.
+     * 
+     * @param c - boolean - whether to use candidate pheromone mode
+     * @return boolean - whether the mode is on. It can't be on without candidate
+     *         lists, or on a sparse graph, whose pheromone is already per path.
+     */
+    public boolean setCandidatePheromone(boolean c) {
+        if (sparseDistances != null) {
+            return false;
+        }
+        candidatePheromone = c && candidateLists != null;
+        pathOffsets = null;
+        pathTargets = null;
+        pathSlots = null;
+        maxPathDegree = 0;
+        if (candidatePheromone) {
+            buildCandidatePaths();
+            compact = true;
+            if (offHeap) {
+                // The per path arrays are small enough for the heap
+                closeOffHeapMatrices();
+                offHeap = false;
+            }
+        }
+        resetPheromone();
+        return candidatePheromone;
+    }
+
+    /**
+     * Getter - gets whether the pheromone is only kept for the paths in the
+     * candidate lists
+     * 
+     * @return boolean - true if in candidate pheromone mode
+     */
+    public boolean isCandidatePheromone() {
+        return candidatePheromone;
+    }
+
+    /**
+     * Checks whether the full matrices would be too big for Java arrays, so the
+     * pheromone has to be kept per candidate path if it's to be on the heap
+     * 
+     * @return boolean - true if n^2 is more than an array can hold
+     */
+    public boolean isTooLargeForHeap() {
+        return (long) numCities * numCities > MAX_ARRAY_ENTRIES;
+    }
+
+    /**
+     * Lays the candidate lists out as paths, like a sparse graph's rows, and works
+     * out which pheromone slot each one uses
+     */
+    private void buildCandidatePaths() {
+        int k = candidateListSize;
+        pathOffsets = new int[numCities + 1];
+        pathTargets = new int[numCities * k];
+        int count = 0;
+        for (int i = 0; i < numCities; i++) {
+            for (int e = i * k; e < (i + 1) * k && candidateLists[e] != -1; e++) {
+                pathTargets[count++] = candidateLists[e];
+            }
+            pathOffsets[i + 1] = count;
+            maxPathDegree = Math.max(maxPathDegree, pathOffsets[i + 1] - pathOffsets[i]);
+        }
+        pathTargets = Arrays.copyOf(pathTargets, count);
+        pathSlots = new int[count];
+        for (int i = 0; i < numCities; i++) {
+            for (int e = pathOffsets[i]; e < pathOffsets[i + 1]; e++) {
+                int j = pathTargets[e];
+                // If both directions are listed, they share the slot of the one with i < j
+                int back = symmetric && j < i ? findPath(j, i) : -1;
+                pathSlots[e] = back == -1 ? e : back;
+            }
+        }
+    }
+
+    /**
+     * Finds where a path is in the per path layout
+     * 
+     * @param i - int - the origin city's id
+     * @param j - int - the destination city's id
+     * @return int - the path's index in getPathTargets, or -1 if it isn't stored
+     */
+    private int findPath(int i, int j) {
+        if (sparseDistances != null) {
+            return sparseDistances.find(i, j);
+        }
+        // A candidate list is short, and sorted by distance rather than id
+        for (int e = pathOffsets[i]; e < pathOffsets[i + 1]; e++) {
+            if (pathTargets[e] == j) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Getter - gets where each city's paths start, when the pheromone is kept per
+     * path
+     * 
+     * @return int[] - city i's paths are at [offsets[i], offsets[i + 1]) of
+     *         getPathTargets, or null if the pheromone is a full matrix
+     */
+    public int[] getPathOffsets() {
+        return pathOffsets;
+    }
+
+    /**
+     * Getter - gets the city each path goes to, when the pheromone is kept per
+     * path. The choice info has one entry per path, in the same order.
+     * 
+     * @return int[] - the destinations, row by row, or null if the pheromone is a
+     *         full matrix
+     */
+    public int[] getPathTargets() {
+        return pathTargets;
+    }
+
+    /**
+     * Getter - gets the most paths out of any one city, when the pheromone is kept
+     * per path
+     * 
+     * @return int - the largest number of paths in a row, or 0 if the pheromone
+     *         is a full matrix
+     */
+    public int getMaxPathDegree() {
+        return maxPathDegree;
+    }
+
+    /**
+     * Getter - gets the sparse rows of weights
+     * 
+     * @return SparseDistanceMatrix - the weights, or null if they aren't sparse
+     */
+    public SparseDistanceMatrix getSparseDistanceMatrix() {
+        return sparseDistances;
+    }
+
+    /**
+     * Getter - gets the dimension of the matrices
+     * 
+     * @return int - the number of rows (and columns) in the matrices
+     */
+    public int getNumCities() {
+        return numCities;
+    }
+
+    /**
+     * Getter - gets the weights of the paths between the cities
+     * 
+     * @return DistanceMatrix - the weights
+     */
+    public DistanceMatrix getDistanceMatrix() {
+        return distances;
+    }
+
+    /**
+     * Getter - gets whether the paths are symmetric, so the pheromone is packed
+     * 
+     * @return boolean - true if [i][j] and [j][i] share their pheromone
+     */
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    /**
+     * Getter - gets the pheromone matrix. In lazy evaporation mode its values are
+     * the pheromone divided by the shared scale.
+     * 
+     * @return double[] - the pheromone matrix, [i][j] is at getPheromoneIndex(i,
+     *         j), or null in compact or off-heap mode
+     */
+    public double[] getPheromoneMatrix() {
+        allocatePheromone();
+        return pheromoneMatrix;
+    }
+
+    /**
+     * Getter - gets the pheromone matrix in compact mode
+     * 
+     * @return float[] - the pheromone matrix, [i][j] is at getPheromoneIndex(i, j),
+     *         or null if not in compact mode, or in off-heap mode
+     */
+    public float[] getCompactPheromoneMatrix() {
+        allocatePheromone();
+        return compactPheromoneMatrix;
+    }
+
+    /**
+     * Getter - gets the pheromone matrix in off-heap mode
+     * 
+     * @return OffHeapMatrix - the pheromone matrix, [i][j] is at
+     *         getPheromoneIndex(i, j), or null if not in off-heap mode
+     */
+    public OffHeapMatrix getOffHeapPheromoneMatrix() {
+        allocatePheromone();
+        return offHeapPheromoneMatrix;
+    }
+
+    /**
+     * Works out where the pheromone (and heuristic) of a path is stored
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     * @return long - the index of [i][j] in the pheromone matrix, or -1 if the
+     *         pheromone is kept per path and the path has none
+     */
+    public long getPheromoneIndex(int i, int j) {
+        if (pathOffsets != null) {
+            int e = findPath(i, j);
+            if (e == -1 && symmetric) {
+                // Only the other direction may be listed
+                e = findPath(j, i);
+            }
+            return e == -1 ? -1 : pathSlots[e];
+        }
+        return symmetric ? PackedDistanceMatrix.index(numCities, i, j) : (long) i * numCities + j;
+    }
+
+    /**
+     * Works out how many entries the pheromone matrix has
+     * 
+     * @return long - the number of entries
+     */
+    public long pheromoneSize() {
+        if (pathOffsets != null) {
+            return pathSlots.length;
+        }
+        return symmetric ? PackedDistanceMatrix.entries(numCities) : (long) numCities * numCities;
+    }
+
+    /**
+     * Getter - gets the row-major choice info matrix. Its entries are only valid
+     * once computeChoiceInfo has been called.
+     * 
+     * @return double[] - the choice info matrix, [i][j] is at i * getNumCities() +
+     *         j, or null in compact or off-heap mode
+     */
+    public double[] getChoiceInfoMatrix() {
+        return choiceInfoMatrix;
+    }
+
+    /**
+     * Getter - gets the row-major choice info matrix in compact mode. Its entries
+     * are only valid once computeChoiceInfo has been called.
+     * 
+     * @return float[] - the choice info matrix, [i][j] is at i * getNumCities() +
+     *         j (or at the path's index, if the graph is sparse), or null if not in
+     *         compact mode, or in off-heap mode
+     */
+    public float[] getCompactChoiceInfoMatrix() {
+        return compactChoiceInfoMatrix;
+    }
+
+    /**
+     * Getter - gets the row-major choice info matrix in off-heap mode. Its entries
+     * are only valid once computeChoiceInfo has been called.
+     * 
+     * @return OffHeapMatrix - the choice info matrix, [i][j] is at i *
+     *         getNumCities() + j, or null if not in off-heap mode
+     */
+    public OffHeapMatrix getOffHeapChoiceInfoMatrix() {
+        return offHeapChoiceInfoMatrix;
+    }
+
+    /**
+     * Computes the heuristic value, (1 / weight)^beta, of every path. This is kept
+     * until beta changes, so repeated calls with the same beta do nothing.
+     * 
+     * @param beta - double - how much the weight of an edge impacts the path chosen
+     */
+    public void computeHeuristic(double beta) {
+        if ((heuristicMatrix != null || compactHeuristicMatrix != null || offHeapHeuristicMatrix != null)
+                && heuristicBeta == beta) {
+            return;
+        }
+        allocatePheromone();
+        choiceInfoStale = true;
+        if (pathOffsets != null) {
+            computePathHeuristic(beta);
+            return;
+        }
+        if (offHeap) {
+            if (offHeapHeuristicMatrix != null) {
+                offHeapHeuristicMatrix.close();
+                offHeapChoiceInfoMatrix.close();
+            }
+            // Both start as 0, like new arrays
+            offHeapHeuristicMatrix = OffHeapMatrix.allocate(pheromoneSize(), compact);
+            offHeapChoiceInfoMatrix = OffHeapMatrix.allocate((long) numCities * numCities, compact);
+        } else if (compact) {
+            checkFitsOnHeap();
+            compactHeuristicMatrix = new float[(int) pheromoneSize()];
+            compactChoiceInfoMatrix = new float[numCities * numCities];
+        } else {
+            checkFitsOnHeap();
+            heuristicMatrix = new double[(int) pheromoneSize()];
+            choiceInfoMatrix = new double[numCities * numCities];
+        }
+        for (int i = 0; i < numCities; i++) {
+            // A symmetric matrix only needs its upper triangle working out
+            for (int j = symmetric ? i : 0; j < numCities; j++) {
+                double w = distances.get(i, j);
+                if (w != NO_PATH) {
+                    // A path with no weight is treated as a very short one, rather than
+                    // dividing by 0
+                    double h = Math.pow(1 / Math.max(w, MIN_WEIGHT), beta);
+                    if (offHeap) {
+                        offHeapHeuristicMatrix.set(getPheromoneIndex(i, j), h);
+                    } else if (compact) {
+                        compactHeuristicMatrix[(int) getPheromoneIndex(i, j)] = (float) h;
+                    } else {
+                        heuristicMatrix[(int) getPheromoneIndex(i, j)] = h;
+                    }
+                }
+            }
+        }
+        heuristicBeta = beta;
+    }
+
+    /**
+     * computeHeuristic for pheromone kept per path, with one entry per path
+     * 
+     * @param beta - double - how much the weight of an edge impacts the path chosen
+     */
+    private void computePathHeuristic(double beta) {
+        compactHeuristicMatrix = new float[pathSlots.length];
+        compactChoiceInfoMatrix = new float[pathSlots.length];
+        for (int i = 0; i < numCities; i++) {
+            for (int e = pathOffsets[i]; e < pathOffsets[i + 1]; e++) {
+                double w = sparseDistances != null ? sparseDistances.getWeight(e) : distances.get(i, pathTargets[e]);
+                compactHeuristicMatrix[pathSlots[e]] = (float) Math.pow(1 / Math.max(w, MIN_WEIGHT), beta);
+            }
+        }
+        heuristicBeta = beta;
+    }
+
+    /**
+     * Computes the choice info, pheromone^alpha * heuristic, for a range of rows.
+     * computeHeuristic must have been called first.
+     * 
+     * @param fromRow - int - the first row to compute
+     * @param toRow   - int - one past the last row to compute
+     * @param alpha   - double - how much the pheromone value impacts the path
+     *                chosen
+     */
+    public void computeChoiceInfo(int fromRow, int toRow, double alpha) {
+        if (pathOffsets != null) {
+            // Only the paths out of the rows need working out, one entry each
+            int[] slots = pathSlots;
+            int[] offsets = pathOffsets;
+            for (int e = offsets[fromRow]; e < offsets[toRow]; e++) {
+                float h = compactHeuristicMatrix[slots[e]];
+                if (h != 0) {
+                    compactChoiceInfoMatrix[e] = (float) (Math.pow(compactPheromoneMatrix[slots[e]], alpha) * h);
+                }
+            }
+            return;
+        }
+        if (offHeap) {
+            computeOffHeapChoiceInfo(fromRow, toRow, alpha);
+            return;
+        }
+        if (compact) {
+            computeCompactChoiceInfo(fromRow, toRow, alpha);
+            return;
+        }
+        if (!symmetric) {
+            // The rows are stored one after another in every matrix, so they're one run
+            Sweeps.INSTANCE.choiceInfo(pheromoneMatrix, heuristicMatrix, fromRow * numCities, choiceInfoMatrix,
+                    fromRow * numCities, (toRow - fromRow) * numCities, alpha);
+            return;
+        }
+        for (int i = fromRow; i < toRow; i++) {
+            int row = i * numCities;
+            // [i][j] for j < i is stored as [j][i], down column i of the triangle
+            for (int j = 0; j < i; j++) {
+                int idx = (int) PackedDistanceMatrix.rowStart(numCities, j) + (i - j);
+                if (heuristicMatrix[idx] != 0) {
+                    choiceInfoMatrix[row + j] = Math.pow(pheromoneMatrix[idx], alpha) * heuristicMatrix[idx];
+                }
+            }
+            // and the rest of the row is stored together, from [i][i], so is one run
+            int start = (int) PackedDistanceMatrix.rowStart(numCities, i);
+            Sweeps.INSTANCE.choiceInfo(pheromoneMatrix, heuristicMatrix, start, choiceInfoMatrix, row + i,
+                    numCities - i, alpha);
+        }
+    }
+
+    /**
+     * computeChoiceInfo for compact mode, reading and writing floats
+     * 
+     * @param fromRow - int - the first row to compute
+     * @param toRow   - int - one past the last row to compute
+     * @param alpha   - double - how much the pheromone value impacts the path
+     *                chosen
+     */
+    private void computeCompactChoiceInfo(int fromRow, int toRow, double alpha) {
+        float[] pheromone = compactPheromoneMatrix;
+        float[] heuristic = compactHeuristicMatrix;
+        for (int i = fromRow; i < toRow; i++) {
+            int row = i * numCities;
+            // As in computeChoiceInfo, a packed row is split into the part down column i
+            // of the triangle and the part stored together from [i][i]
+            int split = symmetric ? i : 0;
+            for (int j = 0; j < split; j++) {
+                int idx = (int) PackedDistanceMatrix.rowStart(numCities, j) + (i - j);
+                if (heuristic[idx] != 0) {
+                    compactChoiceInfoMatrix[row + j] = (float) (Math.pow(pheromone[idx], alpha) * heuristic[idx]);
+                }
+            }
+            int start = symmetric ? (int) PackedDistanceMatrix.rowStart(numCities, i) - i : row;
+            Sweeps.INSTANCE.choiceInfo(pheromone, heuristic, start + split, compactChoiceInfoMatrix, row + split,
+                    numCities - split, alpha);
+        }
     }
 
     /**
-     * Getter - gets the adjacency matrix
+     * computeChoiceInfo for off-heap mode
      * 
-     * @return Edge[][] - the adjacency matrix
+     * @param fromRow - int - the first row to compute
+     * @param toRow   - int - one past the last row to compute
+     * @param alpha   - double - how much the pheromone value impacts the path
+     *                chosen
      */
-    public Edge[][] getAdjacencyMatrix() {
-        return adjacencyMatrix;
+    private void computeOffHeapChoiceInfo(int fromRow, int toRow, double alpha) {
+        for (int i = fromRow; i < toRow; i++) {
+            long row = (long) i * numCities;
+            for (int j = 0; j < numCities; j++) {
+                long idx = getPheromoneIndex(i, j);
+                double h = offHeapHeuristicMatrix.get(idx);
+                if (h != 0) {
+                    offHeapChoiceInfoMatrix.set(row + j, Math.pow(offHeapPheromoneMatrix.get(idx), alpha) * h);
+                }
+            }
+        }
     }
 
     /**
-     * Redirects the pointer in the adjacency list's Edge's to reference the correct
-     * destination
-     * As the corresponding city cannot be confirmed to be created until after the
-     * full parsing of the input XML
+     * Builds every city's candidate list - the k cities with the shortest paths
+     * from it
+     * 
+     * @param k - int - how many neighbours each city's list holds
      */
-    public void repointEdges() {
-        for (int i = 0; i < adjacencyMatrix[0].length; i++) {
-            for (int j = 0; j < adjacencyMatrix.length; j++) {
-                if (adjacencyMatrix[i][j] != null) {
-                    // null check to ignore where the destination is also the current city
-                    adjacencyMatrix[i][j].setDestination(cities.get(j));
+    public void buildCandidateLists(int k) {
+        k = Math.min(k, numCities - 1);
+        if (k <= 0 || sparseDistances != null) {
+            // A sparse graph's rows are already short lists of its neighbours
+            candidateLists = null;
+            candidateListSize = 0;
+        } else {
+            candidateLists = findNearestNeighbours(k);
+            candidateListSize = k;
+        }
+        if (candidatePheromone) {
+            // The paths the pheromone is kept for have changed
+            setCandidatePheromone(true);
+        }
+    }
+
+    /**
+     * Finds the k cities with the shortest paths from every city, nearest first
+     * 
+     * @param k - int - how many neighbours to find for each city, at most
+     *          getNumCities() - 1
+     * @return int[] - the neighbours, city i's starting at i * k. A city with
+     *         fewer than k paths has its list padded with -1.
+     */
+    public int[] findNearestNeighbours(int k) {
+        int[] lists = new int[numCities * k];
+        double[] listWeights = new double[k];
+        for (int i = 0; i < numCities; i++) {
+            int start = i * k;
+            int listed = 0;
+            for (int j = 0; j < numCities; j++) {
+                if (!hasPath(i, j)) {
+                    continue;
                 }
+                double w = getWeight(i, j);
+                if (listed == k && w >= listWeights[k - 1]) {
+                    // Further than everything already on a full list
+                    continue;
+                }
+                // Insertion sort it into the list, dropping the furthest if it's full
+                int pos = listed < k ? listed++ : k - 1;
+                while (pos > 0 && listWeights[pos - 1] > w) {
+                    listWeights[pos] = listWeights[pos - 1];
+                    lists[start + pos] = lists[start + pos - 1];
+                    pos--;
+                }
+                listWeights[pos] = w;
+                lists[start + pos] = j;
+            }
+            for (int pos = listed; pos < k; pos++) {
+                lists[start + pos] = -1;
             }
         }
+        return lists;
+    }
+
+    /**
+     * Getter - gets the candidate lists of every city
+     * 
+     * @return int[] - the candidate lists, city i's starting at i *
+     *         getCandidateListSize(), or null if they haven't been built
+     */
+    public int[] getCandidateLists() {
+        return candidateLists;
     }
 
     /**
-     * Setter - sets values in the adjacency matrix
+     * Getter - gets the length of each city's candidate list
+     * 
+     * @return int - the number of neighbours in each list, or 0 if there are no
+     *         lists
+     */
+    public int getCandidateListSize() {
+        return candidateListSize;
+    }
+
+    /**
+     * Setter - sets a weight in the matrix, if it hasn't already been set
      * 
      * @param i - int - the row index
      * @param j - int - the column index
-     * @param e - Edge - the Edge to be added at that index, then repointed later.
+     * @param w - double - the weight of the path from city i to city j
+     * @throws UnsupportedOperationException - if the weights can't be changed, such
+     *                                       as when they are mapped from a cache
      */
-    public void setAdjacencyMatrixValue(int i, int j, Edge e) {
-        if (adjacencyMatrix[i][j] == null) {
-            adjacencyMatrix[i][j] = e;
+    public void setAdjacencyMatrixValue(int i, int j, double w) throws UnsupportedOperationException {
+        if (!(distances instanceof ArrayDistanceMatrix)) {
+            throw new UnsupportedOperationException("This graph's weights can't be changed");
+        }
+        if (distances.get(i, j) == NO_PATH) {
+            ((ArrayDistanceMatrix) distances).set(i, j, w);
         }
     }
 
     /**
-     * Evaporates the pheromone throughout the adjacency matrix
+     * Checks if there is a path from one city to another
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     * @return boolean - whether or not the path exists
+     */
+    public boolean hasPath(int i, int j) {
+        return distances.get(i, j) != NO_PATH;
+    }
+
+    /**
+     * Getter - gets the weight of the path between two cities
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     * @return double - the weight, or NO_PATH if there isn't one
+     */
+    public double getWeight(int i, int j) {
+        return distances.get(i, j);
+    }
+
+    /**
+     * Getter - gets the pheromone on the path between two cities
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     * @return double - the pheromone value, or 0 if the pheromone is kept per path
+     *         and this path has none
+     */
+    public double getPheromone(int i, int j) {
+        allocatePheromone();
+        long idx = getPheromoneIndex(i, j);
+        if (idx == -1) {
+            return 0;
+        }
+        double stored = storedPheromone(idx);
+        // The uninitialised value isn't scaled
+        return stored == -1 ? -1 : stored * pheromoneScale;
+    }
+
+    /**
+     * Reads a pheromone value as it is stored, from whichever matrix holds it
+     * 
+     * @param idx - long - the pheromone index
+     * @return double - the stored value
+     */
+    private double storedPheromone(long idx) {
+        if (offHeap) {
+            return offHeapPheromoneMatrix.get(idx);
+        }
+        if (compact) {
+            return compactPheromoneMatrix[(int) idx];
+        }
+        return pheromoneMatrix[(int) idx];
+    }
+
+    /**
+     * Writes a pheromone value as it is stored, to whichever matrix holds it
+     * 
+     * @param idx - long - the pheromone index
+     * @param p   - double - the value to store
+     */
+    private void storePheromone(long idx, double p) {
+        if (offHeap) {
+            offHeapPheromoneMatrix.set(idx, p);
+        } else if (compact) {
+            compactPheromoneMatrix[(int) idx] = (float) p;
+        } else {
+            pheromoneMatrix[(int) idx] = p;
+        }
+    }
+
+    /**
+     * Setter - sets the pheromone on the path between two cities. If the
+     * pheromone is kept per path and this path has none, nothing is changed.
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     * @param p - double - the new pheromone value
+     */
+    public void setPheromone(int i, int j, double p) {
+        allocatePheromone();
+        long idx = getPheromoneIndex(i, j);
+        if (idx == -1) {
+            return;
+        }
+        if (lazyEvaporation) {
+            p /= pheromoneScale;
+            markDirty(i, j);
+        }
+        storePheromone(idx, p);
+    }
+
+    /**
+     * This increases the pheromone on the path between two cities. If the
+     * pheromone is kept per path and this path has none, nothing is added.
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     * @param p - double - the amount of pheromone to add
+     */
+    public void updatePheromone(int i, int j, double p) {
+        allocatePheromone();
+        long idx = getPheromoneIndex(i, j);
+        if (idx == -1) {
+            return;
+        }
+        if (lazyEvaporation) {
+            p /= pheromoneScale;
+            markDirty(i, j);
+        }
+        if (offHeap) {
+            offHeapPheromoneMatrix.add(idx, p);
+        } else if (compact) {
+            compactPheromoneMatrix[(int) idx] += (float) p;
+        } else {
+            pheromoneMatrix[(int) idx] += p;
+        }
+    }
+
+    /**
+     * Lists a path as needing its choice info working out again, if it isn't
+     * already
+     * 
+     * @param i - int - the origin city's index
+     * @param j - int - the destination city's index
+     */
+    private void markDirty(int i, int j) {
+        long idx = getPheromoneIndex(i, j);
+        if (choiceInfoStale || idx == -1) {
+            // Everything is being worked out again anyway
+            return;
+        }
+        if (pheromoneSize() > Integer.MAX_VALUE) {
+            // Too many paths for a BitSet to mark, so everything is worked out again
+            choiceInfoStale = true;
+            return;
+        }
+        if (dirty == null) {
+            dirty = new BitSet((int) pheromoneSize());
+        }
+        if (dirty.get((int) idx)) {
+            return;
+        }
+        dirty.set((int) idx);
+        if (numDirty == dirtyFrom.length) {
+            dirtyFrom = Arrays.copyOf(dirtyFrom, Math.max(64, numDirty * 2));
+            dirtyTo = Arrays.copyOf(dirtyTo, dirtyFrom.length);
+        }
+        dirtyFrom[numDirty] = i;
+        dirtyTo[numDirty] = j;
+        numDirty++;
+    }
+
+    /**
+     * In lazy evaporation mode, works out the choice info again for just the paths
+     * whose pheromone has been changed since it was last worked out
+     * 
+     * @param alpha - double - how much the pheromone value impacts the path chosen
+     * @return boolean - true if that was enough, or false if every entry needs
+     *         working out again with computeChoiceInfo (after which
+     *         choiceInfoComputed should be called)
+     */
+    public boolean refreshChoiceInfo(double alpha) {
+        if (!lazyEvaporation || choiceInfoStale || alpha != choiceInfoAlpha) {
+            return false;
+        }
+        for (int k = 0; k < numDirty; k++) {
+            int i = dirtyFrom[k];
+            int j = dirtyTo[k];
+            refreshChoiceInfoEntry(i, j, alpha);
+            if (symmetric) {
+                // Both directions share the pheromone
+                refreshChoiceInfoEntry(j, i, alpha);
+            }
+            dirty.clear((int) getPheromoneIndex(i, j));
+        }
+        numDirty = 0;
+        return true;
+    }
+
+    /**
+     * Records that every choice info entry has just been worked out by
+     * computeChoiceInfo, so from now on only the paths deposited on need working
+     * out again
+     * 
+     * @param alpha - double - the alpha value it was worked out with
+     */
+    public void choiceInfoComputed(double alpha) {
+        choiceInfoStale = false;
+        choiceInfoAlpha = alpha;
+        numDirty = 0;
+        dirty = null;
+    }
+
+    /**
+     * Works out the choice info of one path again
+     * 
+     * @param i     - int - the origin city's index
+     * @param j     - int - the destination city's index
+     * @param alpha - double - how much the pheromone value impacts the path chosen
+     */
+    private void refreshChoiceInfoEntry(int i, int j, double alpha) {
+        long idx = getPheromoneIndex(i, j);
+        // With the pheromone kept per path, the path's own choice info entry may not
+        // be stored even if its pheromone is, shared with the other direction
+        int entry = pathOffsets != null ? findPath(i, j) : 0;
+        if (idx == -1 || entry == -1) {
+            return;
+        }
+        double h;
+        if (offHeap) {
+            h = offHeapHeuristicMatrix.get(idx);
+        } else if (compact) {
+            h = compactHeuristicMatrix[(int) idx];
+        } else {
+            h = heuristicMatrix[(int) idx];
+        }
+        if (h == 0) {
+            return;
+        }
+        double c = Math.pow(storedPheromone(idx), alpha) * h;
+        if (pathOffsets != null) {
+            compactChoiceInfoMatrix[entry] = (float) c;
+        } else if (offHeap) {
+            offHeapChoiceInfoMatrix.set((long) i * numCities + j, c);
+        } else if (compact) {
+            compactChoiceInfoMatrix[i * numCities + j] = (float) c;
+        } else {
+            choiceInfoMatrix[i * numCities + j] = c;
+        }
+    }
+
+    /**
+     * This increases the pheromone on every path along a tour
+     * 
+     * @param tour - int[] - the ids of the cities in the tour, in order
+     * @param p    - double - the amount of pheromone to add to each path
+     */
+    public void updatePheromoneOnTour(int[] tour, double p) {
+        for (int i = 0; i < tour.length - 1; i++) {
+            updatePheromone(tour[i], tour[i + 1], p);
+        }
+    }
+
+    /**
+     * Calculates the length of a tour - the weight of each path along it added
+     * together
+     * 
+     * @param tour - int[] - the ids of the cities in the tour, in order
+     * @return double - the length of the tour
+     */
+    public double calculateTourLength(int[] tour) {
+        double length = 0;
+        for (int i = 0; i < tour.length - 1; i++) {
+            length += getWeight(tour[i], tour[i + 1]);
+        }
+        return length;
+    }
+
+    /**
+     * Evaporates the pheromone throughout the pheromone matrix. A symmetric graph
+     * only has half as many entries to evaporate.
      * 
      * @param evaporation - double - the evaporation rate
      */
     public void evaporatePaths(double evaporation) {
-        for (int i = 0; i < adjacencyMatrix[0].length; i++) {
-            for (int j = 0; j < adjacencyMatrix.length; j++) {
-                if (adjacencyMatrix[i][j] != null) {
-                    // Can't evaporate the connection between the city and itself
-                    adjacencyMatrix[i][j].evaporatePheromone(evaporation);
-                }
+        double remaining = 1 - evaporation;
+        allocatePheromone();
+        if (lazyEvaporation) {
+            pheromoneScale *= remaining;
+            if (pheromoneScale >= (compact ? MIN_FLOAT_SCALE : MIN_DOUBLE_SCALE)) {
+                return;
+            }
+            // The stored values have grown large enough that they need bringing back
+            // down, so the scale is applied to all of them. Every choice info entry then
+            // needs working out again.
+            remaining = pheromoneScale;
+            pheromoneScale = 1;
+            choiceInfoStale = true;
+        }
+        // The pheromone where there is no path (such as between a city and itself) is
+        // never read, so it is evaporated along with the rest rather than checking
+        // every entry
+        if (offHeap) {
+            offHeapPheromoneMatrix.scale(remaining);
+            return;
+        }
+        if (compact) {
+            Sweeps.INSTANCE.scale(compactPheromoneMatrix, 0, compactPheromoneMatrix.length, (float) remaining);
+            return;
+        }
+        Sweeps.INSTANCE.scale(pheromoneMatrix, 0, pheromoneMatrix.length, remaining);
+    }
+
+    /**
+     * Keeps the pheromone on every path between two bounds, as the MAX-MIN Ant
+     * System does, so no path becomes so unlikely it is never tried again, or so
+     * likely that every ant follows it
+     * 
+     * @param min - double - the least pheromone a path may have
+     * @param max - double - the most pheromone a path may have
+     */
+    public void boundPheromone(double min, double max) {
+        allocatePheromone();
+        if (lazyEvaporation) {
+            // The bounds are on the real values, so they're scaled like the stored
+            // ones. Any path may have been clamped, so all the choice info needs working
+            // out again.
+            min /= pheromoneScale;
+            max /= pheromoneScale;
+            choiceInfoStale = true;
+        }
+        if (offHeap) {
+            offHeapPheromoneMatrix.clamp(min, max);
+            return;
+        }
+        if (compact) {
+            Sweeps.INSTANCE.clamp(compactPheromoneMatrix, 0, compactPheromoneMatrix.length, (float) min,
+                    (float) max);
+            return;
+        }
+        Sweeps.INSTANCE.clamp(pheromoneMatrix, 0, pheromoneMatrix.length, min, max);
+    }
+
+    /**
+     * Moves the pheromone on every path part of the way towards a value, so that
+     * p becomes p + delta * (value - p). A delta of 1 sets every path to the
+     * value, starting the search again from scratch, while a smaller one keeps
+     * some of what has been learnt.
+     * 
+     * @param value - double - the pheromone to move towards
+     * @param delta - double - how far to move, from 0 to 1
+     */
+    public void smoothPheromone(double value, double delta) {
+        allocatePheromone();
+        // The shared scale is folded into the stored values, leaving them as the real
+        // ones
+        double scale = lazyEvaporation ? pheromoneScale : 1;
+        pheromoneScale = 1;
+        choiceInfoStale = true;
+        if (delta >= 1) {
+            if (offHeap) {
+                offHeapPheromoneMatrix.fill(value);
+            } else if (compact) {
+                Arrays.fill(compactPheromoneMatrix, (float) value);
+            } else {
+                Arrays.fill(pheromoneMatrix, value);
             }
+            return;
+        }
+        // Shrinking every entry and then adding the same amount to each is two
+        // sweeps over the matrix, like evaporation and bounding
+        double kept = scale * (1 - delta);
+        double added = delta * value;
+        if (offHeap) {
+            offHeapPheromoneMatrix.scale(kept);
+            offHeapPheromoneMatrix.offset(added);
+            return;
+        }
+        if (compact) {
+            Sweeps.INSTANCE.scale(compactPheromoneMatrix, 0, compactPheromoneMatrix.length, (float) kept);
+            Sweeps.INSTANCE.offset(compactPheromoneMatrix, 0, compactPheromoneMatrix.length, (float) added);
+            return;
         }
+        Sweeps.INSTANCE.scale(pheromoneMatrix, 0, pheromoneMatrix.length, kept);
+        Sweeps.INSTANCE.offset(pheromoneMatrix, 0, pheromoneMatrix.length, added);
     }
 
     /**
@@ -120,26 +1291,26 @@ public class Graph {
             retString += "\n";
         }
         retString += "\nAdjacency Matrix:\n";
-        for (int i = 0; i < adjacencyMatrix[0].length; i++) {
-            for (int j = 0; j < adjacencyMatrix.length; j++) {
+        for (int i = 0; i < numCities; i++) {
+            for (int j = 0; j < numCities; j++) {
 
-                if (adjacencyMatrix[i][j] == null) {
+                if (!hasPath(i, j)) {
                     retString += "Self";
                 } else {
-                    retString += adjacencyMatrix[i][j].getWeight();
+                    retString += getWeight(i, j);
                 }
                 retString += " ";
             }
             retString += "\n";
         }
         retString += "\nPheromoneMatrix:\n";
-        for (int i = 0; i < adjacencyMatrix[0].length; i++) {
-            for (int j = 0; j < adjacencyMatrix.length; j++) {
+        for (int i = 0; i < numCities; i++) {
+            for (int j = 0; j < numCities; j++) {
 
-                if (adjacencyMatrix[i][j] == null) {
+                if (!hasPath(i, j)) {
                     retString += "None";
                 } else {
-                    retString += adjacencyMatrix[i][j].getPheromone();
+                    retString += getPheromone(i, j);
                 }
                 retString += " ";
             }
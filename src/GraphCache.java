@@ -0,0 +1,177 @@
+package src;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class GraphCache {
+    /**
+     * Added to the name of the input file to get the name of its cache
+     */
+    public static final String CACHE_SUFFIX = ".cache";
+
+    // The header is: magic, version, number of cities, flags, then the length and
+    // last modified time of the file the cache was made from
+    private static final int MAGIC = 0x41434F47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int FLAG_FLOAT32 = 1;
+    private static final int FLAG_UPPER_TRIANGLE = 2;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Getter - gets the cache file that goes with an input file. It sits next to
+     * the input file.
+     * 
+     * @param source - File - the input file
+     * @return File - the cache file
+     */
+    public File getCacheFile(File source) {
+        return new File(source.getPath() + CACHE_SUFFIX);
+    }
+
+    /**
+     * Opens the cache of an input file, memory mapping its distance matrix rather
+     * than reading it in. Other processes opening the same cache share its pages.
+     * 
+     * @param source - File - the input file
+     * @return Graph - the graph, or null if there is no cache, or it is out of date
+     *         or unreadable
+     * @throws IOException - thrown if an IO error occurs when mapping the cache
+     */
+    public Graph open(File source) throws IOException {
+        File cacheFile = getCacheFile(source);
+        if (!cacheFile.isFile() || cacheFile.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // Keep reading until the header is full
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            int numCities = header.getInt();
+            int flags = header.getInt();
+            long sourceLength = header.getLong();
+            long sourceModified = header.getLong();
+            if (sourceLength != source.length() || sourceModified != source.lastModified()) {
+                // The input file has changed since the cache was written
+                return null;
+            }
+            if (numCities <= 0 || (flags & ~(FLAG_FLOAT32 | FLAG_UPPER_TRIANGLE)) != 0) {
+                // Not a header this version could have written, so the size check below
+                // can't be trusted either
+                return null;
+            }
+            boolean float32 = (flags & FLAG_FLOAT32) != 0;
+            boolean upperTriangle = (flags & FLAG_UPPER_TRIANGLE) != 0;
+            long entries = OffHeapDistanceMatrix.entries(numCities, upperTriangle);
+            long dataSize = entries * (float32 ? Float.BYTES : Double.BYTES);
+            if (channel.size() != HEADER_SIZE + dataSize) {
+                return null;
+            }
+
+            long chunkSize = 1L << OffHeapMatrix.CHUNK_BITS;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((dataSize + chunkSize - 1) / chunkSize)];
+            for (int c = 0; c < chunks.length; c++) {
+                long start = c * chunkSize;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start,
+                        Math.min(chunkSize, dataSize - start)).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            // The mappings stay valid after the channel is closed
+            Graph retGraph = new Graph();
+            OffHeapMatrix weights = new OffHeapMatrix(chunks, float32, entries);
+            retGraph.setDistanceMatrix(new OffHeapDistanceMatrix(numCities, weights, upperTriangle));
+            for (int i = 0; i < numCities; i++) {
+                retGraph.addCity(new City(Integer.toString(i), i));
+            }
+            return retGraph;
+        }
+    }
+
+    /**
+     * Writes a graph's distance matrix to the cache of its input file. The matrix
+     * is stored as floats if that loses nothing, and only its upper triangle is
+     * stored if it is symmetric. The cache is written to a temporary file first,
+     * so another process never sees half of it.
+     * 
+     * @param source - File - the input file the graph was read from
+     * @param g      - Graph - the graph
+     * @throws IOException - thrown if an IO error occurs when writing the cache
+     */
+    public void write(File source, Graph g) throws IOException {
+        DistanceMatrix distances = g.getDistanceMatrix();
+        int numCities = distances.size();
+        boolean float32 = true;
+        boolean upperTriangle = true;
+        for (int i = 0; i < numCities; i++) {
+            for (int j = 0; j < numCities; j++) {
+                double w = distances.get(i, j);
+                if ((float) w != w) {
+                    float32 = false;
+                }
+                if (j > i && w != distances.get(j, i)) {
+                    upperTriangle = false;
+                }
+            }
+        }
+        int flags = (float32 ? FLAG_FLOAT32 : 0) | (upperTriangle ? FLAG_UPPER_TRIANGLE : 0);
+
+        File cacheFile = getCacheFile(source);
+        // A temporary file of its own, so two runs writing the same cache at once
+        // don't write over each other's
+        Path tempFile = Files.createTempFile(cacheFile.getAbsoluteFile().getParentFile().toPath(),
+                cacheFile.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(numCities).putInt(flags);
+                buffer.putLong(source.length()).putLong(source.lastModified());
+                for (int i = 0; i < numCities; i++) {
+                    for (int j = upperTriangle ? i : 0; j < numCities; j++) {
+                        if (buffer.remaining() < Double.BYTES) {
+                            flush(channel, buffer);
+                        }
+                        if (float32) {
+                            buffer.putFloat((float) distances.get(i, j));
+                        } else {
+                            buffer.putDouble(distances.get(i, j));
+                        }
+                    }
+                }
+                flush(channel, buffer);
+            }
+            Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // Don't leave a half written file behind
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes everything in a buffer to a channel, and empties the buffer
+     * 
+     * @param channel - FileChannel - where to write
+     * @param buffer  - ByteBuffer - what to write
+     * @throws IOException - thrown if an IO error occurs when writing
+     */
+    private void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,283 @@
+package src;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+public class GraphLoader {
+
+    /**
+     * Reads a TSPLIB XML file into a Graph in a single pass. The file is streamed
+     * rather than held in memory, and each edge's cost is written straight into the
+     * Graph's weight matrix as it is read.
+     * 
+     * The number of cities isn't given up front, so it is taken from the first
+     * vertex - in a complete instance it has an edge to every other vertex. The
+     * matrix grows if a later vertex or edge turns out to be past the end of it.
+     * If the finished matrix is symmetric, only its upper triangle is kept.
+     * 
+     * If the first vertex doesn't have an edge to every other one, the instance
+     * is taken to be sparse and the edges are collected into a list instead, and
+     * only the paths that exist are kept, as sparse rows. Either guess is checked
+     * once every edge has been read, and the graph switched over if it was wrong.
+     * 
+     * @param f - File - the file to be read
+     * @return Graph - the constructed graph
+     * @throws IOException              - thrown if an IO error occurs when reading
+     * @throws XMLStreamException       - thrown if any parse errors occur
+     * @throws IllegalArgumentException - thrown when the file is null, or contains
+     *                                  no "vertex" elements
+     */
+    public Graph readXML(File f) throws IOException, XMLStreamException, IllegalArgumentException {
+        if (f == null) {
+            throw new IllegalArgumentException("The file cannot be null");
+        }
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // TSPLIB files don't use DTDs, so don't go fetching any
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(f))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                return readVertices(reader);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Reads every "vertex" element and its "edge" children into a new Graph
+     * 
+     * @param reader - XMLStreamReader - the reader, at the start of the document
+     * @return Graph - the constructed graph
+     * @throws XMLStreamException       - thrown if any parse errors occur
+     * @throws IllegalArgumentException - thrown if there are no "vertex" elements,
+     *                                  or the edges are malformed
+     */
+    private Graph readVertices(XMLStreamReader reader) throws XMLStreamException, IllegalArgumentException {
+        ArrayDistanceMatrix weights = null;
+        // The edges of a sparse instance, once it is known not to be complete
+        EdgeList edges = null;
+        int vertex = -1;
+        // The first vertex's edges are held here until the size of the matrix is
+        // known
+        int[] firstTargets = new int[16];
+        double[] firstCosts = new double[16];
+        int firstCount = 0;
+        int maxTarget = -1;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("vertex")) {
+                    vertex++;
+                    if (vertex == 1) {
+                        // Now the first vertex is read, the matrix can be created
+                        int size = firstCount + 1;
+                        for (int i = 0; i < firstCount; i++) {
+                            size = Math.max(size, firstTargets[i] + 1);
+                        }
+                        if (firstCount >= size - 1) {
+                            weights = new ArrayDistanceMatrix(size);
+                            for (int i = 0; i < firstCount; i++) {
+                                setWeight(weights, 0, firstTargets[i], firstCosts[i]);
+                            }
+                        } else {
+                            edges = new EdgeList();
+                            for (int i = 0; i < firstCount; i++) {
+                                edges.add(0, firstTargets[i], firstCosts[i]);
+                            }
+                        }
+                    }
+                } else if (name.equals("edge") && vertex >= 0) {
+                    double cost = parseCost(reader.getAttributeValue(null, "cost"));
+                    int target = parseTarget(reader.getElementText());
+                    maxTarget = Math.max(maxTarget, target);
+                    if (vertex == 0) {
+                        if (firstCount == firstTargets.length) {
+                            firstTargets = Arrays.copyOf(firstTargets, firstCount * 2);
+                            firstCosts = Arrays.copyOf(firstCosts, firstCount * 2);
+                        }
+                        firstTargets[firstCount] = target;
+                        firstCosts[firstCount] = cost;
+                        firstCount++;
+                    } else if (edges != null) {
+                        edges.add(vertex, target, cost);
+                    } else {
+                        int needed = Math.max(vertex, target) + 1;
+                        if (needed > weights.size()) {
+                            weights.resize(Math.max(needed, weights.size() * 2));
+                        }
+                        setWeight(weights, vertex, target, cost);
+                    }
+                }
+            }
+        }
+
+        if (vertex == -1) {
+            throw new IllegalArgumentException(
+                    "The input XML must contain at least one \"vertex\" node. Please check your spelling");
+        }
+        int numCities = vertex + 1;
+        if (maxTarget >= numCities) {
+            throw new IllegalArgumentException("An \"edge\" node points to vertex " + maxTarget + ", but there are only "
+                    + numCities + " \"vertex\" nodes");
+        }
+        Graph retGraph = new Graph();
+        if (edges != null) {
+            SparseDistanceMatrix sparse = edges.toMatrix(numCities);
+            if (!sparse.isComplete()) {
+                retGraph.setDistanceMatrix(sparse);
+                addCities(retGraph, numCities);
+                return retGraph;
+            }
+            // Every vertex turned out to have an edge to every other one
+            weights = new ArrayDistanceMatrix(numCities);
+            for (int e = 0; e < edges.count; e++) {
+                setWeight(weights, edges.sources[e], edges.targets[e], edges.costs[e]);
+            }
+        }
+        if (numCities == 1) {
+            weights = new ArrayDistanceMatrix(1);
+        } else if (numCities != weights.size()) {
+            // The matrix grew past the real number of vertices
+            weights.resize(numCities);
+        }
+        if (!isComplete(weights)) {
+            retGraph.setDistanceMatrix(SparseDistanceMatrix.copyOf(weights));
+        } else if (PackedDistanceMatrix.checkSymmetric(weights)) {
+            // Only half the matrix needs keeping
+            retGraph.setDistanceMatrix(new PackedDistanceMatrix(weights));
+        } else {
+            retGraph.setDistanceMatrix(weights);
+        }
+        addCities(retGraph, numCities);
+        return retGraph;
+    }
+
+    /**
+     * Adds a city to the graph for each vertex
+     * 
+     * @param g         - Graph - the graph to add the cities to
+     * @param numCities - int - the number of vertices
+     */
+    private void addCities(Graph g, int numCities) {
+        for (int i = 0; i < numCities; i++) {
+            // The city's id is its position in the file, which is its index in the matrix
+            g.addCity(new City(Integer.toString(i), i));
+        }
+    }
+
+    /**
+     * Checks whether every vertex has an edge to every other vertex
+     * 
+     * @param weights - ArrayDistanceMatrix - the weights read in
+     * @return boolean - whether there is a weight for every pair of different
+     *         vertices
+     */
+    private boolean isComplete(ArrayDistanceMatrix weights) {
+        int n = weights.size();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j && weights.get(i, j) == Graph.NO_PATH) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the weight of a path, unless it has already been set - the first edge
+     * between two vertices in the file is the one kept
+     * 
+     * @param weights - ArrayDistanceMatrix - the matrix to set the weight in
+     * @param i       - int - the origin vertex
+     * @param j       - int - the destination vertex
+     * @param w       - double - the weight
+     */
+    private void setWeight(ArrayDistanceMatrix weights, int i, int j, double w) {
+        if (weights.get(i, j) == Graph.NO_PATH) {
+            weights.set(i, j, w);
+        }
+    }
+
+    /**
+     * The edges of a sparse instance, as they are read in - three growing arrays
+     * rather than a list of objects
+     */
+    private static class EdgeList {
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private double[] costs = new double[1024];
+        private int count = 0;
+
+        /**
+         * Adds an edge to the end of the list
+         * 
+         * @param source - int - the vertex the edge leaves
+         * @param target - int - the vertex the edge goes to
+         * @param cost   - double - the cost of the edge
+         */
+        void add(int source, int target, double cost) {
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+                costs = Arrays.copyOf(costs, count * 2);
+            }
+            sources[count] = source;
+            targets[count] = target;
+            costs[count] = cost;
+            count++;
+        }
+
+        /**
+         * Builds the sparse rows from the edges
+         * 
+         * @param numCities - int - the number of vertices
+         * @return SparseDistanceMatrix - the rows
+         */
+        SparseDistanceMatrix toMatrix(int numCities) {
+            return new SparseDistanceMatrix(numCities, sources, targets, costs, count);
+        }
+    }
+
+    /**
+     * Reads the cost of an edge
+     * 
+     * @param cost - String - the value of the "cost" attribute
+     * @return double - the cost
+     * @throws IllegalArgumentException - if the cost is missing or isn't a number
+     */
+    private double parseCost(String cost) throws IllegalArgumentException {
+        if (cost == null) {
+            throw new IllegalArgumentException("Every \"edge\" node must have a \"cost\" attribute");
+        }
+        return Double.parseDouble(cost);
+    }
+
+    /**
+     * Reads the vertex an edge points to
+     * 
+     * @param text - String - the text content of the "edge" element
+     * @return int - the id of the vertex
+     * @throws IllegalArgumentException - if the id isn't a non-negative number
+     */
+    private int parseTarget(String text) throws IllegalArgumentException {
+        int target = Integer.parseInt(text.trim());
+        if (target < 0) {
+            throw new IllegalArgumentException("An \"edge\" node points to a negative vertex: " + target);
+        }
+        return target;
+    }
+}
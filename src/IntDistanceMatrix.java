@@ -0,0 +1,74 @@
+package src;
+
+public class IntDistanceMatrix implements DistanceMatrix {
+    private int numCities;
+    private boolean symmetric;
+    // Laid out like an ArrayDistanceMatrix, or like a PackedDistanceMatrix if the
+    // weights are symmetric, but with half the bytes per weight
+    private int[] weights;
+
+    /**
+     * Constructor - copies a matrix of whole-number weights into ints. Use
+     * isIntegral to check the weights first.
+     * 
+     * @param full - DistanceMatrix - the matrix to copy
+     */
+    public IntDistanceMatrix(DistanceMatrix full) {
+        numCities = full.size();
+        symmetric = full.isSymmetric();
+        if (symmetric) {
+            weights = new int[ArrayDistanceMatrix.arrayLength(PackedDistanceMatrix.entries(numCities))];
+            int idx = 0;
+            for (int i = 0; i < numCities; i++) {
+                for (int j = i; j < numCities; j++) {
+                    weights[idx++] = (int) full.get(i, j);
+                }
+            }
+        } else {
+            weights = new int[ArrayDistanceMatrix.arrayLength((long) numCities * numCities)];
+            for (int i = 0; i < numCities; i++) {
+                for (int j = 0; j < numCities; j++) {
+                    weights[i * numCities + j] = (int) full.get(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether every weight in a matrix is a whole number that fits in an
+     * int, so it can be copied without losing anything
+     * 
+     * @param m - DistanceMatrix - the matrix to check
+     * @return boolean - whether every weight fits in an int
+     */
+    public static boolean isIntegral(DistanceMatrix m) {
+        int n = m.size();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double w = m.get(i, j);
+                if (w != (int) w) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (symmetric) {
+            return weights[(int) PackedDistanceMatrix.index(numCities, i, j)];
+        }
+        return weights[i * numCities + j];
+    }
+}
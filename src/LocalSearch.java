@@ -0,0 +1,679 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalSearch {
+    /**
+     * Which ants' tours are improved each iteration
+     */
+    public enum Scope {
+        NONE, BEST, ALL
+    }
+
+    // How many of its nearest cities each city's moves are tried with, if the
+    // graph hasn't got candidate lists of its own
+    public static final int DEFAULT_NEIGHBOURS = 10;
+    // The kinds of move, used to index the counters
+    public static final int TWO_OPT = 0;
+    public static final int OR_OPT = 1;
+    public static final int THREE_OPT = 2;
+    public static final int LIN_KERNIGHAN = 3;
+    private static final String[] MOVE_NAMES = { "2-opt", "Or-opt", "3-opt", "Lin-Kernighan" };
+    // The longest segment an Or-opt move relocates
+    private static final int MAX_SEGMENT = 3;
+    // From this many cities, tours are held as two-level lists rather than arrays
+    public static final int TWO_LEVEL_CITIES = 5000;
+    // The most 2-opt moves one Lin-Kernighan move is built from
+    private static final int MAX_DEPTH = 50;
+    // A move has to shorten the tour by more than this, so rounding errors can't
+    // make two moves undo each other forever
+    private static final double EPSILON = 1e-9;
+    // Only one try in this many of each kind of move is timed, as reading the
+    // clock can take as long as a quick try itself. A power of 2.
+    private static final int TIMING_SAMPLE = 64;
+
+    private Graph graph;
+    private int numCities;
+    // Each city's nearest cities, nearest first, city i's starting at i *
+    // numNeighbours. A move is only tried if it adds a path to one of them.
+    private int[] neighbours;
+    private int numNeighbours;
+    // The tour being improved. On large instances it is a two-level list, so
+    // reversing part of it doesn't take time in proportion to the whole tour.
+    private Tour tour;
+    // Don't-look bits - a city is only tried while it is in the queue. It is taken
+    // off when no move from it helps, and put back when a move changes one of its
+    // paths.
+    private int[] queue;
+    private boolean[] queued;
+    private int queueHead;
+    private int queueSize;
+    // Which kinds of move are tried, in the order of the constants above
+    private boolean[] useMove = { true, false, false, false };
+    // For each kind of move, how many times it was tried at a city, how many
+    // moves were made, how much shorter they made the tours, and how many tries
+    // were timed and the time they took. Each copy counts its own, and they are
+    // added up when read.
+    private long[] tries = new long[MOVE_NAMES.length];
+    private long[] made = new long[MOVE_NAMES.length];
+    private double[] gains = new double[MOVE_NAMES.length];
+    private long[] timed = new long[MOVE_NAMES.length];
+    private long[] nanos = new long[MOVE_NAMES.length];
+    private List<LocalSearch> copies = new ArrayList<>();
+    // The exchanges made so far by the Lin-Kernighan move being built, so they can
+    // be undone, and the paths it has taken out and added, which it mustn't add or
+    // take out again
+    private int[][] exchanges = new int[MAX_DEPTH][4];
+    private int numExchanges;
+    private int[] changedFrom = new int[MAX_DEPTH * 2 + 1];
+    private int[] changedTo = new int[MAX_DEPTH * 2 + 1];
+    private int numChanged;
+
+    /**
+     * Constructor - sets up 2-opt for a graph, using its candidate lists as the
+     * neighbour lists, or finding the DEFAULT_NEIGHBOURS nearest cities if it
+     * hasn't any
+     * 
+     * @param g - Graph - the graph the tours are on, which must be symmetric
+     */
+    public LocalSearch(Graph g) {
+        graph = g;
+        numCities = g.getNumCities();
+        if (g.getCandidateListSize() > 0) {
+            neighbours = g.getCandidateLists();
+            numNeighbours = g.getCandidateListSize();
+        } else {
+            numNeighbours = Math.max(0, Math.min(DEFAULT_NEIGHBOURS, numCities - 1));
+            neighbours = g.findNearestNeighbours(numNeighbours);
+        }
+        tour = newTour(numCities);
+        queue = new int[numCities];
+        queued = new boolean[numCities];
+    }
+
+    /**
+     * Constructor - creates a copy of a local search, sharing its neighbour lists
+     * but with its own scratch space, so the copies can be used on different
+     * threads
+     * 
+     * @param other - LocalSearch - the local search to copy
+     */
+    private LocalSearch(LocalSearch other) {
+        graph = other.graph;
+        useMove = other.useMove.clone();
+        numCities = other.numCities;
+        neighbours = other.neighbours;
+        numNeighbours = other.numNeighbours;
+        tour = newTour(numCities);
+        queue = new int[numCities];
+        queued = new boolean[numCities];
+    }
+
+    /**
+     * Creates an empty tour to improve, of whichever kind suits the number of
+     * cities
+     * 
+     * @param n - int - the number of cities
+     * @return Tour - the tour
+     */
+    private static Tour newTour(int n) {
+        if (n >= TWO_LEVEL_CITIES) {
+            return new TwoLevelTour(n);
+        }
+        return new ArrayTour(n);
+    }
+
+    /**
+     * Creates a copy for another thread to use
+     * 
+     * @return LocalSearch - the copy
+     */
+    public LocalSearch copy() {
+        LocalSearch c = new LocalSearch(this);
+        synchronized (copies) {
+            copies.add(c);
+        }
+        return c;
+    }
+
+    /**
+     * Setter - sets which kinds of move are tried. At each city they are tried in
+     * the order 2-opt, Or-opt, 3-opt, Lin-Kernighan, until one of them shortens
+     * the tour.
+     * 
+     * @param twoOpt       - boolean - whether to try 2-opt moves
+     * @param orOpt        - boolean - whether to try moving segments of 1 to 3
+     *                     cities
+     * @param threeOpt     - boolean - whether to try 3-opt moves that swap two
+     *                     neighbouring parts of the tour
+     * @param linKernighan - boolean - whether to try Lin-Kernighan moves, chains
+     *                     of 2-opt moves
+     */
+    public void setMoves(boolean twoOpt, boolean orOpt, boolean threeOpt, boolean linKernighan) {
+        useMove[TWO_OPT] = twoOpt;
+        useMove[OR_OPT] = orOpt;
+        useMove[THREE_OPT] = threeOpt;
+        useMove[LIN_KERNIGHAN] = linKernighan;
+    }
+
+    /**
+     * Getter - gets how many moves of a kind were made, by this local search and
+     * all its copies
+     * 
+     * @param move - int - the kind of move, TWO_OPT, OR_OPT, THREE_OPT or
+     *             LIN_KERNIGHAN
+     * @return long - the number of moves made
+     */
+    public long getMovesMade(int move) {
+        long total = made[move];
+        synchronized (copies) {
+            for (LocalSearch c : copies) {
+                total += c.made[move];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Lists, for each kind of move tried, how often it was tried and made, how
+     * much it shortened the tours by, and about how long was spent on it, added up
+     * over this local search and all its copies. The time is estimated from the
+     * tries that were timed.
+     * 
+     * @return String - one line per kind of move
+     */
+    public String getStatistics() {
+        String retString = "";
+        synchronized (copies) {
+            for (int m = 0; m < MOVE_NAMES.length; m++) {
+                if (!useMove[m]) {
+                    continue;
+                }
+                long totalTries = tries[m];
+                long totalMade = made[m];
+                double totalGain = gains[m];
+                long totalTimed = timed[m];
+                long totalNanos = nanos[m];
+                for (LocalSearch c : copies) {
+                    totalTries += c.tries[m];
+                    totalMade += c.made[m];
+                    totalGain += c.gains[m];
+                    totalTimed += c.timed[m];
+                    totalNanos += c.nanos[m];
+                }
+                long estimate = totalTimed == 0 ? 0 : (long) ((double) totalNanos * totalTries / totalTimed);
+                retString += MOVE_NAMES[m] + ": " + totalMade + " moves from " + totalTries + " tries, "
+                        + totalGain + " shorter, about " + estimate / 1000000 + "ms\n";
+            }
+        }
+        return retString;
+    }
+
+    /**
+     * Checks whether the tours on a graph can be improved. Reversing part of a
+     * tour only keeps its length the same on a symmetric graph, and a sparse
+     * graph may not have the paths a move needs.
+     * 
+     * @param g - Graph - the graph
+     * @return boolean - whether a LocalSearch can be used on it
+     */
+    public static boolean canImprove(Graph g) {
+        return g.isSymmetric() && !g.isSparse() && g.getNumCities() >= 5;
+    }
+
+    /**
+     * Improves a tour until none of the moves tried make it any shorter
+     * 
+     * @param t      - int[] - the tour, as it is stored by an ant - every city,
+     *               then the starting city again. It is improved in place, and
+     *               still starts at the same city.
+     * @param length - double - the length of the tour
+     * @return double - the length of the improved tour
+     */
+    public double improve(int[] t, double length) {
+        tour.load(t);
+        queueHead = 0;
+        queueSize = 0;
+        for (int i = 0; i < numCities; i++) {
+            push(t[i]);
+        }
+        while (queueSize > 0) {
+            int city = queue[queueHead];
+            queueHead = (queueHead + 1) % numCities;
+            queueSize--;
+            queued[city] = false;
+            length -= improveCity(city);
+        }
+        // Copy the tour back, so it starts where it did
+        tour.store(t, t[0]);
+        t[numCities] = t[0];
+        return length;
+    }
+
+    /**
+     * Tries each kind of move at a city in turn, until one shortens the tour
+     * 
+     * @param a - int - the city
+     * @return double - how much shorter the tour is, or 0 if no move was made
+     */
+    private double improveCity(int a) {
+        for (int m = 0; m < MOVE_NAMES.length; m++) {
+            if (!useMove[m]) {
+                continue;
+            }
+            boolean time = (tries[m] & (TIMING_SAMPLE - 1)) == 0;
+            long start = time ? System.nanoTime() : 0;
+            double gain;
+            if (m == TWO_OPT) {
+                gain = twoOptMove(a);
+            } else if (m == OR_OPT) {
+                gain = orOptMove(a);
+            } else if (m == THREE_OPT) {
+                gain = threeOptMove(a);
+            } else {
+                gain = linKernighanMove(a);
+            }
+            if (time) {
+                nanos[m] += System.nanoTime() - start;
+                timed[m]++;
+            }
+            tries[m]++;
+            if (gain > 0) {
+                made[m]++;
+                gains[m] += gain;
+                return gain;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Looks for a 2-opt move that takes out one of the paths at a city and adds
+     * a path from the city to one of its neighbours, and makes the first one found
+     * that shortens the tour
+     * 
+     * @param a - int - the city
+     * @return double - how much shorter the tour is, or 0 if no move was made
+     */
+    private double twoOptMove(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            // Either the path from a to the city after it is taken out, or the path to
+            // a from the city before it
+            int b = step(a, direction == 0);
+            double removed = graph.getWeight(a, b);
+            for (int k = 0; k < numNeighbours; k++) {
+                int c = neighbours[a * numNeighbours + k];
+                if (c == -1) {
+                    break;
+                }
+                double added = graph.getWeight(a, c);
+                if (added >= removed) {
+                    // The neighbours are nearest first, so a path to any of the rest would
+                    // be at least as long
+                    break;
+                }
+                int d = step(c, direction == 0);
+                if (d == a) {
+                    continue;
+                }
+                double gain = removed + graph.getWeight(c, d) - added - graph.getWeight(b, d);
+                if (gain > EPSILON) {
+                    exchange(a, b, c, d);
+                    push(a);
+                    push(b);
+                    push(c);
+                    push(d);
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Looks for an Or-opt move that takes a segment of 1 to 3 cities starting at a
+     * city and puts it back elsewhere, next to one of the city's neighbours,
+     * either way round, and makes the first one found that shortens the tour
+     * 
+     * @param a - int - the city
+     * @return double - how much shorter the tour is, or 0 if no move was made
+     */
+    private double orOptMove(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int p = step(a, !forward);
+            int end = a;
+            for (int length = 1; length <= MAX_SEGMENT; length++) {
+                if (length > 1) {
+                    end = step(end, forward);
+                }
+                int n = step(end, forward);
+                if (n == p) {
+                    // The segment is the whole tour but one city
+                    break;
+                }
+                // Taking the segment out joins p to n
+                double removed = graph.getWeight(p, a) + graph.getWeight(end, n) - graph.getWeight(p, n);
+                if (removed <= EPSILON) {
+                    continue;
+                }
+                for (int k = 0; k < numNeighbours; k++) {
+                    int c = neighbours[a * numNeighbours + k];
+                    if (c == -1) {
+                        break;
+                    }
+                    double added = graph.getWeight(a, c);
+                    if (added >= removed) {
+                        break;
+                    }
+                    if (c == p || c == n || between(a, c, end, forward)) {
+                        continue;
+                    }
+                    // The segment either goes after c the same way round, so c-cn
+                    // becomes c-a-...-end-cn, or before c the other way round, so
+                    // cp-c becomes cp-end-...-a-c
+                    int cn = step(c, forward);
+                    double gain = removed + graph.getWeight(c, cn) - added - graph.getWeight(end, cn);
+                    if (gain > EPSILON) {
+                        exchange(p, a, c, cn);
+                        exchange(p, c, n, end);
+                        exchange(c, end, a, cn);
+                        pushAll(p, n, a, end, c, cn);
+                        return gain;
+                    }
+                    int cp = step(c, !forward);
+                    gain = removed + graph.getWeight(cp, c) - added - graph.getWeight(cp, end);
+                    if (gain > EPSILON) {
+                        exchange(p, a, cp, c);
+                        exchange(p, cp, n, end);
+                        pushAll(p, n, a, end, c, cp);
+                        return gain;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Looks for a 3-opt move that swaps the two parts of the tour after a city
+     * without reversing either, adding a path from the city to one of its
+     * neighbours and a path back from another neighbour of the city after it. It
+     * makes the first one found that shortens the tour. Only this reconnection of
+     * the three paths taken out is tried, as the others reverse part of the tour
+     * and are mostly found by 2-opt.
+     * 
+     * @param t1 - int - the city
+     * @return double - how much shorter the tour is, or 0 if no move was made
+     */
+    private double threeOptMove(int t1) {
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            // t1-t2, t3-t4 and t5-t6 become t1-t4, t5-t2 and t3-t6, so the tour goes
+            // t1, t4 to t5, t2 to t3, t6
+            int t2 = step(t1, forward);
+            double d12 = graph.getWeight(t1, t2);
+            for (int k = 0; k < numNeighbours; k++) {
+                int t4 = neighbours[t1 * numNeighbours + k];
+                if (t4 == -1) {
+                    break;
+                }
+                double g1 = d12 - graph.getWeight(t1, t4);
+                if (g1 <= 0) {
+                    break;
+                }
+                int t3 = step(t4, !forward);
+                if (t4 == t2) {
+                    continue;
+                }
+                // t1, t4 to t5 has to take at least two cities off the end of the tour
+                int last = step(t1, !forward);
+                double g2Start = g1 + graph.getWeight(t3, t4);
+                for (int l = 0; l < numNeighbours; l++) {
+                    int t5 = neighbours[t2 * numNeighbours + l];
+                    if (t5 == -1) {
+                        break;
+                    }
+                    double g2 = g2Start - graph.getWeight(t5, t2);
+                    if (g2 <= 0) {
+                        break;
+                    }
+                    if (t5 == t1 || t5 == last || !between(t4, t5, last, forward)) {
+                        continue;
+                    }
+                    int t6 = step(t5, forward);
+                    double gain = g2 + graph.getWeight(t5, t6) - graph.getWeight(t3, t6);
+                    if (gain > EPSILON) {
+                        exchange(t1, t2, t3, t4);
+                        exchange(t1, t3, t5, t6);
+                        exchange(t1, t5, t4, t2);
+                        pushAll(t1, t2, t3, t4, t5, t6);
+                        return gain;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Looks for a Lin-Kernighan move from a city - a chain of 2-opt moves, each
+     * taking out the path the last one added to close the tour. The path from the
+     * city to one of its tour neighbours, t1-t2, is taken out, and t2 is joined
+     * to a neighbour t3, which loses its path to t4 so that t4-t1 closes the tour.
+     * The chain then carries on from t4 in place of t2, picking whichever next
+     * step looks best, as long as the paths added are shorter than the paths taken
+     * out. The chain is cut back to wherever the tour was shortest. Each of the
+     * city's neighbours is tried as the first step.
+     * 
+     * @param t1 - int - the city
+     * @return double - how much shorter the tour is, or 0 if no move was made
+     */
+    private double linKernighanMove(int t1) {
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int t2 = step(t1, forward);
+            double removed = graph.getWeight(t1, t2);
+            for (int k = 0; k < numNeighbours; k++) {
+                int t3 = neighbours[t2 * numNeighbours + k];
+                if (t3 == -1) {
+                    break;
+                }
+                double g1 = removed - graph.getWeight(t2, t3);
+                if (g1 <= EPSILON) {
+                    break;
+                }
+                // t4 has to be on the same side of t3 as t1 is of t2, or the exchange
+                // would split the tour in two. A chain that was undone may have left the
+                // tour going the other way round, so which side that is is checked again.
+                int t4 = step(t3, tour.next(t2) == t1);
+                if (t3 == t1 || t4 == t2) {
+                    continue;
+                }
+                double gain = linKernighanChain(t1, t2, t3, t4, g1);
+                if (gain > 0) {
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Builds a Lin-Kernighan chain from its first step, and keeps the part of it
+     * that shortens the tour the most, undoing the rest
+     * 
+     * @param t1 - int - the city the chain starts at
+     * @param t2 - int - the city whose path to t1 is taken out
+     * @param t3 - int - the city t2 is joined to
+     * @param t4 - int - the city whose path to t3 is taken out
+     * @param g1 - double - the weight of t1-t2 less the weight of t2-t3
+     * @return double - how much shorter the tour is, or 0 if it was left as it was
+     */
+    private double linKernighanChain(int t1, int t2, int t3, int t4, double g1) {
+        numExchanges = 0;
+        numChanged = 0;
+        recordChanged(t1, t2);
+        double bestGain = 0;
+        int bestExchanges = 0;
+        while (true) {
+            exchange(t2, t1, t3, t4);
+            int[] record = exchanges[numExchanges++];
+            record[0] = t1;
+            record[1] = t2;
+            record[2] = t3;
+            record[3] = t4;
+            recordChanged(t2, t3);
+            recordChanged(t3, t4);
+            // The gain so far, if t4-t1 was taken out again rather than closing the
+            // tour
+            double g = g1 + graph.getWeight(t3, t4);
+            double closed = g - graph.getWeight(t4, t1);
+            if (closed > bestGain + EPSILON) {
+                bestGain = closed;
+                bestExchanges = numExchanges;
+            }
+            if (numExchanges == MAX_DEPTH) {
+                break;
+            }
+            // Carry on from t4, choosing the next step that adds the least and takes
+            // out the most
+            t2 = t4;
+            boolean forward = tour.next(t1) == t2;
+            int bestNext = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < numNeighbours; k++) {
+                int c = neighbours[t2 * numNeighbours + k];
+                if (c == -1) {
+                    break;
+                }
+                double added = graph.getWeight(t2, c);
+                if (g - added <= EPSILON) {
+                    break;
+                }
+                int d = step(c, !forward);
+                if (c == t1 || d == t1 || d == t2 || wasChanged(t2, c) || wasChanged(c, d)) {
+                    continue;
+                }
+                double value = graph.getWeight(c, d) - added;
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestNext = c;
+                }
+            }
+            if (bestNext == -1) {
+                break;
+            }
+            t3 = bestNext;
+            t4 = step(t3, !forward);
+            g1 = g - graph.getWeight(t2, t3);
+        }
+        while (numExchanges > bestExchanges) {
+            // Undo the exchange - t2-t3 and t1-t4 go back to t2-t1 and t3-t4
+            int[] undo = exchanges[--numExchanges];
+            exchange(undo[1], undo[2], undo[0], undo[3]);
+        }
+        for (int e = 0; e < numExchanges; e++) {
+            pushAll(exchanges[e]);
+        }
+        return bestGain;
+    }
+
+    /**
+     * Records that a Lin-Kernighan chain has taken out or added a path
+     * 
+     * @param a - int - the city at one end of the path
+     * @param b - int - the city at the other end of the path
+     */
+    private void recordChanged(int a, int b) {
+        changedFrom[numChanged] = a;
+        changedTo[numChanged] = b;
+        numChanged++;
+    }
+
+    /**
+     * Checks whether the Lin-Kernighan chain being built has already taken out or
+     * added a path
+     * 
+     * @param a - int - the city at one end of the path
+     * @param b - int - the city at the other end of the path
+     * @return boolean - whether the path has been changed
+     */
+    private boolean wasChanged(int a, int b) {
+        for (int e = 0; e < numChanged; e++) {
+            if ((changedFrom[e] == a && changedTo[e] == b) || (changedFrom[e] == b && changedTo[e] == a)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes out two paths of the tour, a-b and c-d, and adds a-c and b-d, by
+     * reversing the part of the tour between them. b must come after a in the
+     * same direction as d comes after c.
+     * 
+     * @param a - int - the city at one end of the first path
+     * @param b - int - the city at the other end of the first path
+     * @param c - int - the city at one end of the second path
+     * @param d - int - the city at the other end of the second path
+     */
+    private void exchange(int a, int b, int c, int d) {
+        if (tour.next(a) == b) {
+            tour.reverse(b, c);
+        } else {
+            tour.reverse(c, b);
+        }
+    }
+
+    /**
+     * Puts the cities at the ends of every path a move changed back in the queue
+     * 
+     * @param cities - int... - the cities
+     */
+    private void pushAll(int... cities) {
+        for (int c : cities) {
+            push(c);
+        }
+    }
+
+    /**
+     * Gets the city one step along the tour from a city
+     * 
+     * @param c       - int - the city
+     * @param forward - boolean - whether to step to the next city rather than the
+     *                previous one
+     * @return int - the city one step along
+     */
+    private int step(int c, boolean forward) {
+        return forward ? tour.next(c) : tour.prev(c);
+    }
+
+    /**
+     * Checks whether going along the tour from one city, another city is reached
+     * no later than a third
+     * 
+     * @param from    - int - the city to start from
+     * @param c       - int - the city to look for
+     * @param to      - int - the city to stop at
+     * @param forward - boolean - whether to go forwards along the tour
+     * @return boolean - whether c is on the way from from to to
+     */
+    private boolean between(int from, int c, int to, boolean forward) {
+        return forward ? tour.between(from, c, to) : tour.between(to, c, from);
+    }
+
+    /**
+     * Puts a city in the queue to be tried, if it isn't already
+     * 
+     * @param c - int - the city
+     */
+    private void push(int c) {
+        if (!queued[c]) {
+            queued[c] = true;
+            queue[(queueHead + queueSize) % numCities] = c;
+            queueSize++;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package src;
+
+public class OffHeapDistanceMatrix implements DistanceMatrix {
+    private int numCities;
+    private OffHeapMatrix weights;
+    private boolean upperTriangle;
+
+    /**
+     * Constructor - wraps an off-heap matrix holding the weights, such as one
+     * mapped from a cache by GraphCache
+     * 
+     * @param n               - int - the dimension of the matrix
+     * @param w               - OffHeapMatrix - the weights
+     * @param isUpperTriangle - boolean - whether only [i][j] with i <= j is stored,
+     *                        as the matrix is symmetric
+     */
+    public OffHeapDistanceMatrix(int n, OffHeapMatrix w, boolean isUpperTriangle) {
+        numCities = n;
+        weights = w;
+        upperTriangle = isUpperTriangle;
+    }
+
+    /**
+     * Copies a matrix outside the Java heap. The weights are stored as floats if
+     * that loses nothing, and only the upper triangle is stored if the matrix is
+     * symmetric.
+     * 
+     * @param m - DistanceMatrix - the matrix to copy
+     * @return OffHeapDistanceMatrix - the copy
+     */
+    public static OffHeapDistanceMatrix copyOf(DistanceMatrix m) {
+        int n = m.size();
+        boolean upper = m.isSymmetric();
+        boolean float32 = true;
+        for (int i = 0; i < n && float32; i++) {
+            for (int j = upper ? i : 0; j < n; j++) {
+                double w = m.get(i, j);
+                if ((float) w != w) {
+                    float32 = false;
+                    break;
+                }
+            }
+        }
+        OffHeapMatrix w = OffHeapMatrix.allocate(entries(n, upper), float32);
+        for (int i = 0; i < n; i++) {
+            for (int j = upper ? i : 0; j < n; j++) {
+                w.set(index(n, i, j, upper), m.get(i, j));
+            }
+        }
+        return new OffHeapDistanceMatrix(n, w, upper);
+    }
+
+    /**
+     * Getter - gets the off-heap matrix holding the weights
+     * 
+     * @return OffHeapMatrix - the weights
+     */
+    public OffHeapMatrix getWeights() {
+        return weights;
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return weights.get(index(numCities, i, j, upperTriangle));
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return upperTriangle;
+    }
+
+    /**
+     * Works out where [i][j] is stored in a matrix, counted in entries rather than
+     * bytes
+     * 
+     * @param n             - int - the dimension of the matrix
+     * @param i             - int - the row
+     * @param j             - int - the column
+     * @param upperTriangle - boolean - whether only [i][j] with i <= j is stored
+     * @return long - the index of the entry
+     */
+    static long index(int n, int i, int j, boolean upperTriangle) {
+        return upperTriangle ? PackedDistanceMatrix.index(n, i, j) : (long) i * n + j;
+    }
+
+    /**
+     * Works out how many entries a matrix stores
+     * 
+     * @param n             - int - the dimension of the matrix
+     * @param upperTriangle - boolean - whether only [i][j] with i <= j is stored
+     * @return long - the number of entries
+     */
+    static long entries(int n, boolean upperTriangle) {
+        return upperTriangle ? PackedDistanceMatrix.entries(n) : (long) n * n;
+    }
+}
@@ -0,0 +1,225 @@
+package src;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class OffHeapMatrix implements AutoCloseable {
+    // Each buffer holds (at most) this many bytes of the matrix, as one buffer
+    // can't be larger than 2GB. It's a multiple of both entry sizes, so no entry
+    // is split between two buffers.
+    static final int CHUNK_BITS = 30;
+    static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private ByteBuffer[] chunks;
+    private boolean float32;
+    private long length;
+    // Whether the buffers were allocated here, so can be freed by close, rather
+    // than mapped from a file
+    private boolean owned;
+
+    /**
+     * Constructor - wraps buffers that already hold a matrix, such as those mapped
+     * from a cache file
+     * 
+     * @param c         - ByteBuffer[] - the matrix, split into chunks of
+     *                  2^CHUNK_BITS bytes
+     * @param isFloat32 - boolean - whether the entries are floats rather than
+     *                  doubles
+     * @param entries   - long - the number of entries
+     */
+    public OffHeapMatrix(ByteBuffer[] c, boolean isFloat32, long entries) {
+        chunks = c;
+        float32 = isFloat32;
+        length = entries;
+        owned = false;
+    }
+
+    /**
+     * Allocates a new matrix outside the Java heap, so it doesn't add to the heap
+     * size or to the time taken by garbage collection. Every entry starts as 0.
+     * 
+     * @param entries   - long - the number of entries
+     * @param isFloat32 - boolean - whether the entries are floats rather than
+     *                  doubles
+     * @return OffHeapMatrix - the new matrix
+     * @throws IllegalArgumentException - if the number of entries is negative (as
+     *                                  an overflowed size would be) or too large
+     */
+    public static OffHeapMatrix allocate(long entries, boolean isFloat32) throws IllegalArgumentException {
+        if (entries < 0 || entries > Long.MAX_VALUE / Double.BYTES) {
+            throw new IllegalArgumentException(entries + " entries can't be held in an off-heap matrix");
+        }
+        long bytes = entries * (isFloat32 ? Float.BYTES : Double.BYTES);
+        long chunkSize = 1L << CHUNK_BITS;
+        ByteBuffer[] c = new ByteBuffer[(int) ((bytes + chunkSize - 1) / chunkSize)];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ByteBuffer.allocateDirect((int) Math.min(chunkSize, bytes - i * chunkSize))
+                    .order(ByteOrder.nativeOrder());
+        }
+        OffHeapMatrix m = new OffHeapMatrix(c, isFloat32, entries);
+        m.owned = true;
+        return m;
+    }
+
+    /**
+     * Getter - gets the number of entries
+     * 
+     * @return long - the number of entries
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Getter - gets whether the entries are floats
+     * 
+     * @return boolean - true if floats, false if doubles
+     */
+    public boolean isFloat32() {
+        return float32;
+    }
+
+    /**
+     * Getter - gets an entry
+     * 
+     * @param idx - long - the index of the entry
+     * @return double - the entry
+     * @throws IndexOutOfBoundsException - if idx isn't between 0 and length() - 1
+     */
+    public double get(long idx) throws IndexOutOfBoundsException {
+        checkIndex(idx);
+        long offset = idx << (float32 ? 2 : 3);
+        ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        int position = (int) (offset & CHUNK_MASK);
+        return float32 ? chunk.getFloat(position) : chunk.getDouble(position);
+    }
+
+    /**
+     * Setter - sets an entry
+     * 
+     * @param idx - long - the index of the entry
+     * @param v   - double - the new value
+     * @throws IndexOutOfBoundsException - if idx isn't between 0 and length() - 1
+     */
+    public void set(long idx, double v) throws IndexOutOfBoundsException {
+        checkIndex(idx);
+        long offset = idx << (float32 ? 2 : 3);
+        ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        int position = (int) (offset & CHUNK_MASK);
+        if (float32) {
+            chunk.putFloat(position, (float) v);
+        } else {
+            chunk.putDouble(position, v);
+        }
+    }
+
+    /**
+     * Checks that an index is inside the matrix. Without this, an index past the
+     * end of the last chunk could still land inside it, and an overflowed negative
+     * one would read from the wrong chunk rather than failing.
+     * 
+     * @param idx - long - the index of the entry
+     * @throws IndexOutOfBoundsException - if idx isn't between 0 and length() - 1
+     */
+    private void checkIndex(long idx) throws IndexOutOfBoundsException {
+        if (idx < 0 || idx >= length) {
+            throw new IndexOutOfBoundsException("Index " + idx + " is outside an off-heap matrix of " + length
+                    + " entries");
+        }
+    }
+
+    /**
+     * Adds to an entry
+     * 
+     * @param idx - long - the index of the entry
+     * @param v   - double - the amount to add
+     */
+    public void add(long idx, double v) {
+        set(idx, get(idx) + v);
+    }
+
+    /**
+     * Sets every entry to the same value
+     * 
+     * @param v - double - the value
+     */
+    public void fill(double v) {
+        for (long idx = 0; idx < length; idx++) {
+            set(idx, v);
+        }
+    }
+
+    /**
+     * Multiplies every entry by the same amount
+     * 
+     * @param f - double - the amount to multiply by
+     */
+    public void scale(double f) {
+        for (long idx = 0; idx < length; idx++) {
+            set(idx, get(idx) * f);
+        }
+    }
+
+    /**
+     * Adds the same amount to every entry
+     * 
+     * @param v - double - the amount to add
+     */
+    public void offset(double v) {
+        for (long idx = 0; idx < length; idx++) {
+            set(idx, get(idx) + v);
+        }
+    }
+
+    /**
+     * Limits every entry to between two bounds
+     * 
+     * @param min - double - the smallest value an entry may have
+     * @param max - double - the largest value an entry may have
+     */
+    public void clamp(double min, double max) {
+        for (long idx = 0; idx < length; idx++) {
+            set(idx, Math.min(max, Math.max(min, get(idx))));
+        }
+    }
+
+    /**
+     * Frees the memory of a matrix allocated by allocate straight away, rather
+     * than waiting for the garbage collector to notice it's unused. The matrix
+     * can't be used afterwards. Wrapped buffers are left for their owner to free.
+     */
+    @Override
+    public void close() {
+        if (chunks == null) {
+            return;
+        }
+        if (owned) {
+            for (ByteBuffer chunk : chunks) {
+                free(chunk);
+            }
+        }
+        chunks = null;
+        length = 0;
+    }
+
+    /**
+     * Frees a direct buffer's memory. This goes through sun.misc.Unsafe, as there
+     * is no standard way before the foreign memory API - if it isn't available,
+     * the buffer is left to the garbage collector.
+     * 
+     * @param buffer - ByteBuffer - the direct buffer to free
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The garbage collector frees it once nothing refers to it
+        }
+    }
+}
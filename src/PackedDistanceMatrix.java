@@ -0,0 +1,98 @@
+package src;
+
+public class PackedDistanceMatrix implements DistanceMatrix {
+    private int numCities;
+    // Only [i][j] with i <= j is stored, row by row, as [j][i] is the same. Row i
+    // holds the n - i entries from [i][i] to [i][n - 1].
+    private double[] weights;
+
+    /**
+     * Constructor - packs the upper triangle of a symmetric matrix
+     * 
+     * @param full - DistanceMatrix - the matrix to pack, which must be symmetric
+     */
+    public PackedDistanceMatrix(DistanceMatrix full) {
+        numCities = full.size();
+        weights = new double[ArrayDistanceMatrix.arrayLength(entries(numCities))];
+        int idx = 0;
+        for (int i = 0; i < numCities; i++) {
+            for (int j = i; j < numCities; j++) {
+                weights[idx++] = full.get(i, j);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a matrix is symmetric, so it can be packed
+     * 
+     * @param m - DistanceMatrix - the matrix to check
+     * @return boolean - whether [i][j] is the same as [j][i] for every i and j
+     */
+    public static boolean checkSymmetric(DistanceMatrix m) {
+        int n = m.size();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (m.get(i, j) != m.get(j, i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Works out where [i][j] is stored in a packed upper triangle, whichever way
+     * round i and j are
+     * 
+     * @param n - int - the dimension of the matrix
+     * @param i - int - the row
+     * @param j - int - the column
+     * @return long - the index of the entry
+     */
+    static long index(int n, int i, int j) {
+        if (i > j) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+        return rowStart(n, i) + (j - i);
+    }
+
+    /**
+     * Works out where row i (which starts at [i][i]) begins in a packed upper
+     * triangle
+     * 
+     * @param n - int - the dimension of the matrix
+     * @param i - int - the row
+     * @return long - the index of [i][i]
+     */
+    static long rowStart(int n, int i) {
+        // Row i starts after the n + (n - 1) + ... + (n - i + 1) entries before it
+        return (long) i * n - (long) i * (i - 1) / 2;
+    }
+
+    /**
+     * Works out how many entries a packed upper triangle stores
+     * 
+     * @param n - int - the dimension of the matrix
+     * @return long - the number of entries
+     */
+    static long entries(int n) {
+        return (long) n * (n + 1) / 2;
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return weights[(int) index(numCities, i, j)];
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+}
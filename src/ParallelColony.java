@@ -0,0 +1,393 @@
+package src;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelColony {
+    // Below this many ants, a batch is run on one thread rather than split further
+    private static final int MIN_BATCH_SIZE = 4;
+    // The most matrix entries all the pheromone delta buffers may hold between them
+    // (32M doubles, 256MB). Past this, fewer buffers are used.
+    private static final long MAX_DELTA_ENTRIES = 32L * 1024 * 1024;
+
+    private Ant[] ants;
+    private Graph graph;
+    private AntColonyOptimiser optimiser;
+    private int threadCount;
+    private ForkJoinPool pool;
+    // The pheromone each slice of ants deposits, kept apart until it is merged into
+    // the graph so that threads never write to the same matrix
+    private double[][] deltas;
+    // Which ants' tours are improved after they're built, and each thread's own
+    // copy of the local search that does it
+    private LocalSearch.Scope localSearchScope = LocalSearch.Scope.NONE;
+    private ThreadLocal<LocalSearch> localSearches;
+
+    /**
+     * Constructor - creates the pool of ants, each with its own random number
+     * generator, and the threads they are run on
+     * 
+     * @param g          - Graph - the graph the ants tour
+     * @param aco        - AntColonyOptimiser - used to pick the starting cities
+     * @param numAnts    - int - the number of ants in the colony
+     * @param threads    - int - the number of threads to build tours on
+     * @param seedSource - Random - where each ant's random seed is taken from
+     */
+    public ParallelColony(Graph g, AntColonyOptimiser aco, int numAnts, int threads, Random seedSource) {
+        graph = g;
+        optimiser = aco;
+        threadCount = Math.max(1, threads);
+        ants = new Ant[numAnts];
+        for (int i = 0; i < numAnts; i++) {
+            // Every ant has its own generator, seeded in order, so the tours built don't
+            // depend on which thread happens to run which ant
+            ants[i] = new Ant(null, g);
+            ants[i].setRandom(new Random(seedSource.nextLong()));
+        }
+        if (threadCount > 1) {
+            pool = new ForkJoinPool(threadCount);
+            // A symmetric graph's pheromone matrix is packed, so its buffers are too
+            long matrixSize = g.pheromoneSize();
+            int buffers = (int) Math.min(threadCount, MAX_DELTA_ENTRIES / Math.max(1, matrixSize));
+            if (buffers > 1) {
+                deltas = new double[buffers][(int) matrixSize];
+            }
+        }
+    }
+
+    /**
+     * Getter - gets the ants in the colony
+     * 
+     * @return Ant[] - the ants, in a fixed order
+     */
+    public Ant[] getAnts() {
+        return ants;
+    }
+
+    /**
+     * Getter - gets the number of threads tours are built on
+     * 
+     * @return int - the number of threads
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Setter - sets the local search used to improve the tours built, and which
+     * ants' tours it is used on
+     * 
+     * @param search - LocalSearch - the local search, copied for each thread
+     * @param scope  - LocalSearch.Scope - whose tours are improved
+     */
+    public void setLocalSearch(LocalSearch search, LocalSearch.Scope scope) {
+        localSearchScope = scope;
+        localSearches = ThreadLocal.withInitial(search::copy);
+    }
+
+    /**
+     * Recomputes the graph's choice info matrix from the current pheromone,
+     * splitting the rows across the threads. This needs calling whenever the
+     * pheromone has changed, before the next tours are built.
+     * 
+     * @param alpha - double - how much the pheromone value impacts the path chosen
+     * @param beta  - double - how much the weight of an edge impacts the path
+     *              chosen
+     */
+    public void updateChoiceInfo(double alpha, double beta) {
+        // The heuristic only changes with beta, so it is done once up front
+        graph.computeHeuristic(beta);
+        // With lazy evaporation, usually only the paths deposited on need doing
+        if (graph.refreshChoiceInfo(alpha)) {
+            return;
+        }
+        if (pool == null) {
+            graph.computeChoiceInfo(0, graph.getNumCities(), alpha);
+        } else {
+            pool.invoke(new ChoiceInfoTask(0, graph.getNumCities(), alpha));
+        }
+        graph.choiceInfoComputed(alpha);
+    }
+
+    /**
+     * Resets the first count ants at a random starting city and builds their
+     * tours, splitting the ants across the threads. The choice info matrix is only
+     * read while this runs. If there is a local search, the tours are then
+     * improved with it.
+     * 
+     * @param count - int - how many of the ants to run
+     */
+    public void constructTours(int count) {
+        if (pool == null) {
+            buildTours(0, count);
+        } else {
+            pool.invoke(new TourTask(0, count));
+        }
+        if (localSearchScope == LocalSearch.Scope.BEST) {
+            // Only the shortest whole tour of the iteration is improved
+            Ant best = null;
+            for (int i = 0; i < count; i++) {
+                if (ants[i].isTourComplete() && (best == null || ants[i].getFitness() < best.getFitness())) {
+                    best = ants[i];
+                }
+            }
+            if (best != null) {
+                best.improveTour(localSearches.get());
+                best.setFitness(best.getTourLength());
+            }
+        }
+    }
+
+    /**
+     * Builds the tours of the ants in the range [from, to) on the current thread.
+     * Each ant only touches its own arrays, so no locking is needed.
+     * 
+     * @param from - int - the first ant to run
+     * @param to   - int - one past the last ant to run
+     */
+    private void buildTours(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Ant a = ants[i];
+            a.reset(optimiser.getRandomCity(graph, a.getRandom()));
+            a.calculatePath();
+            if (localSearchScope == LocalSearch.Scope.ALL) {
+                a.improveTour(localSearches.get());
+            }
+            // The length was added up as the tour was built
+            a.setFitness(a.getTourLength());
+        }
+    }
+
+    /**
+     * Increases the pheromone on the paths of the first count ants by the given
+     * amount, leaving out any ant that got stuck before finishing its tour. The
+     * ants are split into one slice per delta buffer, each slice adds its
+     * deposits to its own buffer on its own thread, and then the buffers are
+     * summed into the pheromone matrix with each thread merging its own rows. The
+     * buffers are always summed in the same order, so the result doesn't depend on
+     * the threads.
+     * 
+     * @param count  - int - how many of the ants deposit pheromone
+     * @param amount - double - how much pheromone each ant adds to each path
+     */
+    public void depositPheromone(int count, double amount) {
+        if (deltas == null || graph.isLazyEvaporation()) {
+            // Not enough threads or memory to split the work, or lazy evaporation, where
+            // merging every entry of the buffers would cost more than depositing
+            // directly
+            for (int i = 0; i < count; i++) {
+                if (ants[i].isTourComplete()) {
+                    ants[i].increasePheromoneOnPath(amount);
+                }
+            }
+            return;
+        }
+        pool.invoke(new DepositTask(0, deltas.length, count, amount));
+        pool.invoke(new MergeTask(0, deltas[0].length));
+    }
+
+    /**
+     * Adds the deposits of one slice of the ants to that slice's delta buffer
+     * 
+     * @param slice  - int - the slice of ants, and the buffer they deposit into
+     * @param count  - int - how many of the ants deposit pheromone
+     * @param amount - double - how much pheromone each ant adds to each path
+     */
+    private void depositSlice(int slice, int count, double amount) {
+        double[] delta = deltas[slice];
+        int sliceSize = (count + deltas.length - 1) / deltas.length;
+        int end = Math.min(count, (slice + 1) * sliceSize);
+        for (int a = slice * sliceSize; a < end; a++) {
+            if (!ants[a].isTourComplete()) {
+                continue;
+            }
+            int[] tour = ants[a].tourMemory;
+            int size = ants[a].tourSize;
+            for (int i = 0; i < size - 1; i++) {
+                long idx = graph.getPheromoneIndex(tour[i], tour[i + 1]);
+                // With candidate pheromone, a path off the candidate lists has none
+                if (idx != -1) {
+                    delta[(int) idx] += amount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums the delta buffers into a range of the pheromone matrix, and clears them
+     * ready for the next iteration
+     * 
+     * @param from - int - the first entry to merge
+     * @param to   - int - one past the last entry to merge
+     */
+    private void mergeRange(int from, int to) {
+        double[] pheromone = graph.getPheromoneMatrix();
+        float[] compactPheromone = graph.getCompactPheromoneMatrix();
+        OffHeapMatrix offHeapPheromone = graph.getOffHeapPheromoneMatrix();
+        for (int idx = from; idx < to; idx++) {
+            double sum = 0;
+            for (double[] delta : deltas) {
+                sum += delta[idx];
+                delta[idx] = 0;
+            }
+            if (sum != 0) {
+                if (offHeapPheromone != null) {
+                    offHeapPheromone.add(idx, sum);
+                } else if (compactPheromone != null) {
+                    compactPheromone[idx] += (float) sum;
+                } else {
+                    pheromone[idx] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shuts down the threads. The colony can't build tours in parallel afterwards.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Splits a range of ants in half until it is small enough to run, letting idle
+     * threads steal the other halves
+     */
+    private class TourTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+
+        /**
+         * Constructor - the range of ants for this task to run
+         * 
+         * @param f - int - the first ant to run
+         * @param t - int - one past the last ant to run
+         */
+        TourTask(int f, int t) {
+            from = f;
+            to = t;
+        }
+
+        @Override
+        protected void compute() {
+            int batchSize = Math.max(MIN_BATCH_SIZE, ants.length / (threadCount * 4));
+            if (to - from <= batchSize) {
+                buildTours(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TourTask(from, middle), new TourTask(middle, to));
+            }
+        }
+    }
+
+    /**
+     * Recomputes a range of rows of the choice info matrix
+     */
+    private class ChoiceInfoTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+        private double alpha;
+
+        /**
+         * Constructor - the range of rows for this task to compute
+         * 
+         * @param f - int - the first row
+         * @param t - int - one past the last row
+         * @param a - double - the alpha value
+         */
+        ChoiceInfoTask(int f, int t, double a) {
+            from = f;
+            to = t;
+            alpha = a;
+        }
+
+        @Override
+        protected void compute() {
+            int rowsPerTask = Math.max(1, graph.getNumCities() / (threadCount * 4));
+            if (to - from <= rowsPerTask) {
+                graph.computeChoiceInfo(from, to, alpha);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChoiceInfoTask(from, middle, alpha), new ChoiceInfoTask(middle, to, alpha));
+            }
+        }
+    }
+
+    /**
+     * Deposits a range of slices of ants into their delta buffers, one slice per
+     * thread
+     */
+    private class DepositTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+        private int count;
+        private double amount;
+
+        /**
+         * Constructor - the range of slices for this task to deposit
+         * 
+         * @param f - int - the first slice
+         * @param t - int - one past the last slice
+         * @param c - int - how many of the ants deposit pheromone
+         * @param a - double - how much pheromone each ant adds to each path
+         */
+        DepositTask(int f, int t, int c, double a) {
+            from = f;
+            to = t;
+            count = c;
+            amount = a;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                depositSlice(from, count, amount);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DepositTask(from, middle, count, amount), new DepositTask(middle, to, count, amount));
+            }
+        }
+    }
+
+    /**
+     * Merges a range of entries of the delta buffers into the pheromone matrix
+     */
+    private class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+
+        /**
+         * Constructor - the range of entries for this task to merge
+         * 
+         * @param f - int - the first entry
+         * @param t - int - one past the last entry
+         */
+        MergeTask(int f, int t) {
+            from = f;
+            to = t;
+        }
+
+        @Override
+        protected void compute() {
+            int entriesPerTask = Math.max(1, deltas[0].length / (threadCount * 4));
+            if (to - from <= entriesPerTask) {
+                mergeRange(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MergeTask(from, middle), new MergeTask(middle, to));
+            }
+        }
+    }
+}
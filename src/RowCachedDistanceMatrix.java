@@ -0,0 +1,183 @@
+package src;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RowCachedDistanceMatrix implements DistanceMatrix {
+    private DistanceMatrix source;
+    private int numCities;
+    // Each city's candidate list, city i's starting at i * listSize. Only the
+    // distances to these are cached, as they're the ones the ants and the local
+    // search keep coming back to. Until they're set, every lookup goes to the
+    // source.
+    private int[] neighbours;
+    private int listSize;
+    // The cached row of each city - its distances to the cities on its list, in
+    // the same order - or null if it isn't cached. A row is filled in before it's
+    // published here and never changed afterwards, so reading one needs no lock.
+    private AtomicReferenceArray<double[]> rowOfCity;
+    // Whether each city's row has been used since the CLOCK hand last passed it.
+    // This is only a hint for eviction, so it's written without a lock - a lost
+    // write just means a row is evicted a little early.
+    private boolean[] referenced;
+    // Which city's row is in each slot, or -1 if the slot is empty. Only read or
+    // written while holding the lock on slotLock.
+    private int[] cityInSlot;
+    private int hand;
+    private final Object slotLock = new Object();
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor - puts a cache in front of a distance matrix. Nothing is cached
+     * until setNeighbours says which distances to keep.
+     * 
+     * @param s - DistanceMatrix - where the distances come from
+     */
+    public RowCachedDistanceMatrix(DistanceMatrix s) {
+        source = s;
+        numCities = s.size();
+    }
+
+    /**
+     * Starts caching, for each city, the distances to the cities on its candidate
+     * list. These rows are only k long, so far more of them fit than whole rows
+     * would, and once there are more cities than fit, the least recently used
+     * rows are evicted by the CLOCK algorithm.
+     * 
+     * @param lists - int[] - the candidate lists, city i's starting at i * k, padded
+     *              with -1
+     * @param k     - int - the length of each list
+     * @param rows  - int - the most rows to hold at once
+     */
+    public void setNeighbours(int[] lists, int k, int rows) {
+        rows = Math.max(1, Math.min(rows, numCities));
+        rowOfCity = new AtomicReferenceArray<>(numCities);
+        referenced = new boolean[numCities];
+        cityInSlot = new int[rows];
+        Arrays.fill(cityInSlot, -1);
+        hand = 0;
+        listSize = k;
+        neighbours = lists;
+    }
+
+    /**
+     * Getter - gets the matrix the distances come from
+     * 
+     * @return DistanceMatrix - the uncached matrix
+     */
+    public DistanceMatrix getSource() {
+        return source;
+    }
+
+    /**
+     * Getter - gets how many lookups of a path on a candidate list found its row in
+     * the cache
+     * 
+     * @return long - the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter - gets how many lookups of a path on a candidate list had to work out
+     * its row. Lookups of other paths go straight to the source and aren't counted.
+     * 
+     * @return long - the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter - gets how many rows have been evicted to make room for others
+     * 
+     * @return long - the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return source.isSymmetric();
+    }
+
+    @Override
+    public double get(int i, int j) {
+        int[] lists = neighbours;
+        if (lists == null) {
+            return source.get(i, j);
+        }
+        int start = i * listSize;
+        int pos = 0;
+        while (pos < listSize && lists[start + pos] != j) {
+            pos++;
+        }
+        if (pos == listSize) {
+            // Not one of the distances that's cached
+            return source.get(i, j);
+        }
+        double[] row = rowOfCity.get(i);
+        if (row == null) {
+            row = load(i);
+        } else {
+            hits.increment();
+        }
+        if (!referenced[i]) {
+            // Only written when it changes, so hits don't keep dirtying the cache line
+            referenced[i] = true;
+        }
+        return row[pos];
+    }
+
+    /**
+     * Works out a row and puts it in the cache. The row is filled in before the
+     * lock is taken, so other threads can carry on reading cached rows (and
+     * filling their own) meanwhile, and the lock only covers choosing a slot.
+     * Slots are chosen by the CLOCK algorithm - a hand sweeps over them, and the
+     * first row it finds that hasn't been used since the hand last passed is
+     * replaced.
+     * 
+     * @param i - int - the origin city's id
+     * @return double[] - the distances from city i to the cities on its list
+     */
+    private double[] load(int i) {
+        misses.increment();
+        double[] row = new double[listSize];
+        for (int pos = 0; pos < listSize; pos++) {
+            int j = neighbours[i * listSize + pos];
+            row[pos] = j == -1 ? Graph.NO_PATH : source.get(i, j);
+        }
+        synchronized (slotLock) {
+            double[] existing = rowOfCity.get(i);
+            if (existing != null) {
+                // Another thread loaded it first
+                return existing;
+            }
+            while (cityInSlot[hand] != -1 && referenced[cityInSlot[hand]]) {
+                // Give the row a second chance, and move on
+                referenced[cityInSlot[hand]] = false;
+                hand = (hand + 1) % cityInSlot.length;
+            }
+            int s = hand;
+            hand = (hand + 1) % cityInSlot.length;
+            if (cityInSlot[s] != -1) {
+                // Threads still reading the evicted row keep their own reference to it
+                rowOfCity.set(cityInSlot[s], null);
+                evictions.increment();
+            }
+            cityInSlot[s] = i;
+            rowOfCity.set(i, row);
+        }
+        return row;
+    }
+}
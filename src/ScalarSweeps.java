@@ -0,0 +1,71 @@
+package src;
+
+public class ScalarSweeps implements Sweeps {
+
+    @Override
+    public void scale(double[] a, int from, int to, double factor) {
+        for (int i = from; i < to; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public void scale(float[] a, int from, int to, float factor) {
+        for (int i = from; i < to; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public void clamp(double[] a, int from, int to, double min, double max) {
+        for (int i = from; i < to; i++) {
+            a[i] = Math.min(max, Math.max(min, a[i]));
+        }
+    }
+
+    @Override
+    public void clamp(float[] a, int from, int to, float min, float max) {
+        for (int i = from; i < to; i++) {
+            a[i] = Math.min(max, Math.max(min, a[i]));
+        }
+    }
+
+    @Override
+    public void offset(double[] a, int from, int to, double amount) {
+        for (int i = from; i < to; i++) {
+            a[i] += amount;
+        }
+    }
+
+    @Override
+    public void offset(float[] a, int from, int to, float amount) {
+        for (int i = from; i < to; i++) {
+            a[i] += amount;
+        }
+    }
+
+    @Override
+    public void choiceInfo(double[] pheromone, double[] heuristic, int from, double[] choiceInfo, int to,
+            int length, double alpha) {
+        for (int k = 0; k < length; k++) {
+            double h = heuristic[from + k];
+            if (h != 0) {
+                // x^1 is x, so the call to pow can be skipped
+                double p = alpha == 1 ? pheromone[from + k] : Math.pow(pheromone[from + k], alpha);
+                choiceInfo[to + k] = p * h;
+            }
+        }
+    }
+
+    @Override
+    public void choiceInfo(float[] pheromone, float[] heuristic, int from, float[] choiceInfo, int to, int length,
+            double alpha) {
+        for (int k = 0; k < length; k++) {
+            float h = heuristic[from + k];
+            if (h != 0) {
+                double p = alpha == 1 ? pheromone[from + k] : Math.pow(pheromone[from + k], alpha);
+                choiceInfo[to + k] = (float) (p * h);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package src;
+
+import java.util.Arrays;
+
+public class SparseDistanceMatrix implements DistanceMatrix {
+    private int numCities;
+    // Compressed sparse rows - the paths out of city i are at [offsets[i],
+    // offsets[i + 1]) of targets and weights, sorted by the city they go to. Only
+    // paths that exist are stored, so the memory used grows with the number of
+    // paths rather than the square of the number of cities.
+    private int[] offsets;
+    private int[] targets;
+    private float[] weights;
+    private boolean symmetric;
+    private int maxDegree;
+    // Where each path's pheromone is kept. A symmetric graph shares one between
+    // the two directions of a path, the slot of the direction with i < j.
+    private int[] pheromoneSlots;
+
+    /**
+     * Constructor - builds the rows from a list of paths. If the same path is in
+     * the list more than once, the first one is kept.
+     * 
+     * @param n       - int - the number of cities
+     * @param sources - int[] - the city each path starts at
+     * @param dests   - int[] - the city each path goes to
+     * @param costs   - double[] - the weight of each path
+     * @param count   - int - how many paths are in the arrays
+     */
+    public SparseDistanceMatrix(int n, int[] sources, int[] dests, double[] costs, int count) {
+        numCities = n;
+        offsets = new int[n + 1];
+        for (int e = 0; e < count; e++) {
+            offsets[sources[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        // Each path's destination and position in the list, packed so a row can be
+        // sorted by destination, then by position
+        long[] order = new long[count];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < count; e++) {
+            order[next[sources[e]]++] = ((long) dests[e] << 32) | e;
+        }
+        targets = new int[count];
+        weights = new float[count];
+        int kept = 0;
+        int[] newOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(order, offsets[i], offsets[i + 1]);
+            int previous = -1;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int dest = (int) (order[k] >>> 32);
+                if (dest == previous) {
+                    // A later copy of the same path
+                    continue;
+                }
+                previous = dest;
+                targets[kept] = dest;
+                weights[kept] = (float) costs[(int) order[k]];
+                kept++;
+            }
+            newOffsets[i + 1] = kept;
+            maxDegree = Math.max(maxDegree, newOffsets[i + 1] - newOffsets[i]);
+        }
+        offsets = newOffsets;
+        targets = Arrays.copyOf(targets, kept);
+        weights = Arrays.copyOf(weights, kept);
+
+        symmetric = true;
+        for (int i = 0; i < n && symmetric; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int back = find(targets[e], i);
+                if (back == -1 || weights[back] != weights[e]) {
+                    symmetric = false;
+                    break;
+                }
+            }
+        }
+        pheromoneSlots = new int[kept];
+        for (int i = 0; i < n; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                pheromoneSlots[e] = symmetric && targets[e] < i ? find(targets[e], i) : e;
+            }
+        }
+    }
+
+    /**
+     * Copies the paths that exist in a matrix into sparse rows
+     * 
+     * @param m - DistanceMatrix - the matrix to copy
+     * @return SparseDistanceMatrix - the copy
+     */
+    public static SparseDistanceMatrix copyOf(DistanceMatrix m) {
+        int n = m.size();
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (m.get(i, j) != Graph.NO_PATH) {
+                    count++;
+                }
+            }
+        }
+        int[] sources = new int[count];
+        int[] dests = new int[count];
+        double[] costs = new double[count];
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double w = m.get(i, j);
+                if (w != Graph.NO_PATH) {
+                    sources[e] = i;
+                    dests[e] = j;
+                    costs[e] = w;
+                    e++;
+                }
+            }
+        }
+        return new SparseDistanceMatrix(n, sources, dests, costs, count);
+    }
+
+    /**
+     * Checks whether every city has a path to every other city, in which case a
+     * dense matrix is the better fit
+     * 
+     * @return boolean - whether the graph is complete
+     */
+    public boolean isComplete() {
+        long paths = 0;
+        for (int i = 0; i < numCities; i++) {
+            paths += offsets[i + 1] - offsets[i] - (find(i, i) == -1 ? 0 : 1);
+        }
+        return paths == (long) numCities * (numCities - 1);
+    }
+
+    /**
+     * Finds where the path from one city to another is stored
+     * 
+     * @param i - int - the origin city's id
+     * @param j - int - the destination city's id
+     * @return int - the path's index in getTargets, or -1 if there is no path
+     */
+    public int find(int i, int j) {
+        int index = Arrays.binarySearch(targets, offsets[i], offsets[i + 1], j);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Getter - gets where each city's paths start
+     * 
+     * @return int[] - city i's paths are at [offsets[i], offsets[i + 1])
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Getter - gets the city each path goes to
+     * 
+     * @return int[] - the destinations, row by row
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Getter - gets where each path's pheromone is kept
+     * 
+     * @return int[] - the pheromone slot of each path, row by row
+     */
+    public int[] getPheromoneSlots() {
+        return pheromoneSlots;
+    }
+
+    /**
+     * Getter - gets the weight of a path by where it's stored
+     * 
+     * @param e - int - the path's index in getTargets
+     * @return double - the weight
+     */
+    public double getWeight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * Getter - gets the number of paths stored
+     * 
+     * @return int - the number of paths
+     */
+    public int getNumPaths() {
+        return targets.length;
+    }
+
+    /**
+     * Getter - gets the most paths out of any one city
+     * 
+     * @return int - the largest number of paths in a row
+     */
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+
+    @Override
+    public int size() {
+        return numCities;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        int e = find(i, j);
+        return e == -1 ? Graph.NO_PATH : weights[e];
+    }
+}
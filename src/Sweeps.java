@@ -0,0 +1,126 @@
+package src;
+
+public interface Sweeps {
+
+    /**
+     * The sweeps used by every graph - the vectorised ones if the
+     * jdk.incubator.vector module was enabled when the JVM started, otherwise the
+     * plain loops
+     */
+    Sweeps INSTANCE = load();
+
+    /**
+     * Multiplies a range of an array by a factor, such as when evaporating
+     * pheromone
+     * 
+     * @param a      - double[] - the array to scale
+     * @param from   - int - the first entry to scale
+     * @param to     - int - one past the last entry to scale
+     * @param factor - double - what to multiply each entry by
+     */
+    void scale(double[] a, int from, int to, double factor);
+
+    /**
+     * scale for an array of floats
+     * 
+     * @param a      - float[] - the array to scale
+     * @param from   - int - the first entry to scale
+     * @param to     - int - one past the last entry to scale
+     * @param factor - float - what to multiply each entry by
+     */
+    void scale(float[] a, int from, int to, float factor);
+
+    /**
+     * Limits a range of an array to between two bounds, such as when keeping
+     * pheromone within the MAX-MIN Ant System's limits
+     * 
+     * @param a    - double[] - the array to clamp
+     * @param from - int - the first entry to clamp
+     * @param to   - int - one past the last entry to clamp
+     * @param min  - double - the smallest value an entry may have
+     * @param max  - double - the largest value an entry may have
+     */
+    void clamp(double[] a, int from, int to, double min, double max);
+
+    /**
+     * clamp for an array of floats
+     * 
+     * @param a    - float[] - the array to clamp
+     * @param from - int - the first entry to clamp
+     * @param to   - int - one past the last entry to clamp
+     * @param min  - float - the smallest value an entry may have
+     * @param max  - float - the largest value an entry may have
+     */
+    void clamp(float[] a, int from, int to, float min, float max);
+
+    /**
+     * Adds the same amount to every entry in a range of an array, such as when
+     * moving pheromone back towards the MAX-MIN Ant System's upper bound
+     * 
+     * @param a      - double[] - the array to add to
+     * @param from   - int - the first entry to add to
+     * @param to     - int - one past the last entry to add to
+     * @param amount - double - what to add to each entry
+     */
+    void offset(double[] a, int from, int to, double amount);
+
+    /**
+     * offset for an array of floats
+     * 
+     * @param a      - float[] - the array to add to
+     * @param from   - int - the first entry to add to
+     * @param to     - int - one past the last entry to add to
+     * @param amount - float - what to add to each entry
+     */
+    void offset(float[] a, int from, int to, float amount);
+
+    /**
+     * Works out pheromone^alpha * heuristic for a run of entries stored next to
+     * each other. An entry with no heuristic value (where there is no path) is
+     * left alone.
+     * 
+     * @param pheromone  - double[] - the pheromone values
+     * @param heuristic  - double[] - the heuristic values, in the same places as
+     *                   the pheromone
+     * @param from       - int - where the run starts in pheromone and heuristic
+     * @param choiceInfo - double[] - where to put the results
+     * @param to         - int - where the run starts in choiceInfo
+     * @param length     - int - the number of entries in the run
+     * @param alpha      - double - how much the pheromone value impacts the path
+     *                   chosen
+     */
+    void choiceInfo(double[] pheromone, double[] heuristic, int from, double[] choiceInfo, int to, int length,
+            double alpha);
+
+    /**
+     * choiceInfo for arrays of floats
+     * 
+     * @param pheromone  - float[] - the pheromone values
+     * @param heuristic  - float[] - the heuristic values, in the same places as
+     *                   the pheromone
+     * @param from       - int - where the run starts in pheromone and heuristic
+     * @param choiceInfo - float[] - where to put the results
+     * @param to         - int - where the run starts in choiceInfo
+     * @param length     - int - the number of entries in the run
+     * @param alpha      - double - how much the pheromone value impacts the path
+     *                   chosen
+     */
+    void choiceInfo(float[] pheromone, float[] heuristic, int from, float[] choiceInfo, int to, int length,
+            double alpha);
+
+    /**
+     * Picks the sweeps to use. VectorSweeps can only be loaded when the JVM was
+     * started with --add-modules jdk.incubator.vector, so it is looked up by name
+     * and the plain loops are used if it can't be. It is kept in vector/src and
+     * only compiled when the module is added, so it may not be there at all.
+     * 
+     * @return Sweeps - the sweeps to use
+     */
+    private static Sweeps load() {
+        try {
+            return (Sweeps) Class.forName("src.VectorSweeps").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarSweeps();
+        }
+    }
+}
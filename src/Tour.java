@@ -0,0 +1,64 @@
+package src;
+
+public interface Tour {
+
+    /**
+     * Sets the tour to a list of every city, in order
+     * 
+     * @param cities - int[] - the cities, in their first getNumCities() entries
+     */
+    void load(int[] cities);
+
+    /**
+     * Copies the tour out as a list of every city, in order
+     * 
+     * @param cities - int[] - where to put the cities, in its first
+     *               getNumCities() entries
+     * @param start  - int - the city to start the list from
+     */
+    void store(int[] cities, int start);
+
+    /**
+     * Getter - gets the number of cities in the tour
+     * 
+     * @return int - the number of cities
+     */
+    int getNumCities();
+
+    /**
+     * Gets the city after a city in the tour
+     * 
+     * @param c - int - the city
+     * @return int - the next city
+     */
+    int next(int c);
+
+    /**
+     * Gets the city before a city in the tour
+     * 
+     * @param c - int - the city
+     * @return int - the previous city
+     */
+    int prev(int c);
+
+    /**
+     * Checks whether going forwards along the tour from one city, another city is
+     * reached no later than a third
+     * 
+     * @param a - int - the city to start from
+     * @param b - int - the city to look for
+     * @param c - int - the city to stop at
+     * @return boolean - whether b is on the way from a to c
+     */
+    boolean between(int a, int b, int c);
+
+    /**
+     * Reverses the part of the tour from one city forwards to another. The rest
+     * of the tour may be reversed instead, which gives the same tour going the
+     * other way round, so afterwards the two cities may be either way round.
+     * 
+     * @param from - int - the first city of the part
+     * @param to   - int - the last city of the part
+     */
+    void reverse(int from, int to);
+}
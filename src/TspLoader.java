@@ -0,0 +1,134 @@
+package src;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+public class TspLoader {
+
+    /**
+     * Reads a TSPLIB .tsp file with a NODE_COORD_SECTION into a Graph. Only the
+     * coordinates are kept - the distances are worked out from them whenever
+     * they're needed, rather than filling a matrix up front.
+     * 
+     * The EDGE_WEIGHT_TYPE must be EUC_2D, CEIL_2D, GEO or ATT.
+     * 
+     * @param f - File - the file to be read
+     * @return Graph - the constructed graph
+     * @throws IOException              - thrown if an IO error occurs when reading
+     * @throws IllegalArgumentException - thrown when the file is null, its edge
+     *                                  weight type isn't supported, or its
+     *                                  coordinates are missing or malformed
+     */
+    public Graph readTSP(File f) throws IOException, IllegalArgumentException {
+        if (f == null) {
+            throw new IllegalArgumentException("The file cannot be null");
+        }
+        int dimension = -1;
+        CoordinateDistanceMatrix.Type type = null;
+        double[] xs = null;
+        double[] ys = null;
+        try (BufferedReader in = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("NODE_COORD_SECTION")) {
+                    if (dimension < 1) {
+                        throw new IllegalArgumentException("DIMENSION must come before NODE_COORD_SECTION");
+                    }
+                    if (type == null) {
+                        throw new IllegalArgumentException("EDGE_WEIGHT_TYPE must come before NODE_COORD_SECTION");
+                    }
+                    xs = new double[dimension];
+                    ys = new double[dimension];
+                    readCoordinates(in, xs, ys);
+                } else if (line.startsWith("EOF")) {
+                    break;
+                } else {
+                    // Every other line in the header is "KEY : VALUE"
+                    int colon = line.indexOf(':');
+                    if (colon == -1) {
+                        continue;
+                    }
+                    String key = line.substring(0, colon).trim();
+                    String value = line.substring(colon + 1).trim();
+                    if (key.equals("DIMENSION")) {
+                        dimension = Integer.parseInt(value);
+                    } else if (key.equals("EDGE_WEIGHT_TYPE")) {
+                        try {
+                            type = CoordinateDistanceMatrix.Type.valueOf(value);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unsupported EDGE_WEIGHT_TYPE: " + value
+                                    + ". It must be EUC_2D, CEIL_2D, GEO or ATT");
+                        }
+                    }
+                }
+            }
+        }
+        if (xs == null) {
+            throw new IllegalArgumentException("The input file must contain a NODE_COORD_SECTION");
+        }
+
+        Graph retGraph = new Graph();
+        retGraph.setDistanceMatrix(new CoordinateDistanceMatrix(type, xs, ys));
+        for (int i = 0; i < dimension; i++) {
+            // The city's id is its position in the file, and its name is its number
+            // in the file
+            retGraph.addCity(new City(Integer.toString(i), i));
+        }
+        return retGraph;
+    }
+
+    /**
+     * Reads the "number x y" lines of a NODE_COORD_SECTION. The nodes are numbered
+     * from 1.
+     * 
+     * @param in - BufferedReader - the reader, just after the section's heading
+     * @param xs - double[] - where to put each node's x coordinate
+     * @param ys - double[] - where to put each node's y coordinate
+     * @throws IOException              - thrown if an IO error occurs when reading
+     * @throws IllegalArgumentException - thrown if a line is malformed, or a node
+     *                                  is missing
+     */
+    private void readCoordinates(BufferedReader in, double[] xs, double[] ys)
+            throws IOException, IllegalArgumentException {
+        boolean[] seen = new boolean[xs.length];
+        for (int read = 0; read < xs.length;) {
+            String line = in.readLine();
+            if (line == null) {
+                break;
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals("EOF")) {
+                // The file ended before every node was given, which is reported below
+                break;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Malformed NODE_COORD_SECTION line: " + line);
+            }
+            int node = Integer.parseInt(parts[0]) - 1;
+            if (node < 0 || node >= xs.length) {
+                throw new IllegalArgumentException("Node " + parts[0] + " is outside the DIMENSION of " + xs.length);
+            }
+            xs[node] = Double.parseDouble(parts[1]);
+            ys[node] = Double.parseDouble(parts[2]);
+            if (!seen[node]) {
+                seen[node] = true;
+                read++;
+            }
+        }
+        for (int i = 0; i < seen.length; i++) {
+            if (!seen[i]) {
+                throw new IllegalArgumentException("Node " + (i + 1) + " has no coordinates");
+            }
+        }
+    }
+}
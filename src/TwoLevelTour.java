@@ -0,0 +1,447 @@
+package src;
+
+public class TwoLevelTour implements Tour {
+    // A segment can grow to this many times its starting size, as cities are moved
+    // into it from its neighbours, before every segment is rebuilt
+    private static final int MAX_GROWTH = 4;
+    // The sequence numbers drift as cities are moved between segments, so every
+    // segment is rebuilt before they could overflow
+    private static final int MAX_SEQUENCE = 1 << 30;
+
+    private int numCities;
+    private int groupSize;
+    private int numSegments;
+    // The tour is split into about sqrt(n) segments, each a doubly linked list of
+    // cities with increasing sequence numbers. A segment is read backwards if its
+    // reversed bit is set, so a run of whole segments is reversed by flipping
+    // their bits and reversing their order, rather than touching every city.
+    // succ and pred only link cities in the same segment, and are -1 at its ends.
+    private int[] succ;
+    private int[] pred;
+    private int[] sequence;
+    private int[] segment;
+    // For each segment - its ends (head has the lowest sequence number), size,
+    // neighbouring segments in the tour, and its rank, its place in the order of
+    // the segments around the tour
+    private boolean[] reversed;
+    private int[] head;
+    private int[] tail;
+    private int[] size;
+    private int[] segNext;
+    private int[] segPrev;
+    private int[] rank;
+    private boolean rebuild;
+    // Scratch space for reversing within a segment, reversing a run of segments
+    // and rebuilding
+    private int[] scratch;
+    private int[] segmentScratch;
+
+    /**
+     * Constructor - creates an empty tour of a number of cities, to be filled in
+     * by load. It needs at least three segments, so at least 24 cities.
+     * 
+     * @param n - int - the number of cities
+     */
+    public TwoLevelTour(int n) {
+        numCities = n;
+        groupSize = Math.max(8, (int) Math.sqrt(n));
+        numSegments = (n + groupSize - 1) / groupSize;
+        if (numSegments < 3) {
+            throw new IllegalArgumentException("A two-level tour needs at least 24 cities");
+        }
+        succ = new int[n];
+        pred = new int[n];
+        sequence = new int[n];
+        segment = new int[n];
+        reversed = new boolean[numSegments];
+        head = new int[numSegments];
+        tail = new int[numSegments];
+        size = new int[numSegments];
+        segNext = new int[numSegments];
+        segPrev = new int[numSegments];
+        rank = new int[numSegments];
+        scratch = new int[n];
+        segmentScratch = new int[numSegments];
+    }
+
+    @Override
+    public void load(int[] cities) {
+        for (int s = 0; s < numSegments; s++) {
+            int from = s * groupSize;
+            int to = Math.min(numCities, from + groupSize);
+            reversed[s] = false;
+            head[s] = cities[from];
+            tail[s] = cities[to - 1];
+            size[s] = to - from;
+            segNext[s] = s + 1 == numSegments ? 0 : s + 1;
+            segPrev[s] = s == 0 ? numSegments - 1 : s - 1;
+            rank[s] = s;
+            for (int i = from; i < to; i++) {
+                int c = cities[i];
+                segment[c] = s;
+                sequence[c] = i - from;
+                succ[c] = i + 1 < to ? cities[i + 1] : -1;
+                pred[c] = i > from ? cities[i - 1] : -1;
+            }
+        }
+        rebuild = false;
+    }
+
+    @Override
+    public void store(int[] cities, int start) {
+        int c = start;
+        for (int i = 0; i < numCities; i++) {
+            cities[i] = c;
+            c = next(c);
+        }
+    }
+
+    @Override
+    public int getNumCities() {
+        return numCities;
+    }
+
+    @Override
+    public int next(int c) {
+        int s = segment[c];
+        if (reversed[s]) {
+            return c == head[s] ? first(segNext[s]) : pred[c];
+        }
+        return c == tail[s] ? first(segNext[s]) : succ[c];
+    }
+
+    @Override
+    public int prev(int c) {
+        int s = segment[c];
+        if (reversed[s]) {
+            return c == tail[s] ? last(segPrev[s]) : succ[c];
+        }
+        return c == head[s] ? last(segPrev[s]) : pred[c];
+    }
+
+    @Override
+    public boolean between(int a, int b, int c) {
+        if (compare(a, c) <= 0) {
+            return compare(a, b) <= 0 && compare(b, c) <= 0;
+        }
+        // The way from a to c passes the end of the last ranked segment
+        return compare(a, b) <= 0 || compare(b, c) <= 0;
+    }
+
+    /**
+     * Reverses the part of the tour from one city forwards to another. If it's
+     * inside one segment, just those cities are reversed. Otherwise the segments
+     * at its ends are split so it is made of whole segments, by moving the fewer
+     * cities to the neighbouring segment, and those segments are reversed. If it
+     * covers more than half the segments, the rest of the tour is reversed
+     * instead. Either way, it takes time in proportion to sqrt(n).
+     * 
+     * @param from - int - the first city of the part
+     * @param to   - int - the last city of the part
+     */
+    @Override
+    public void reverse(int from, int to) {
+        if (rebuild) {
+            // Start from evenly sized segments again
+            store(scratch, from);
+            load(scratch);
+        }
+        reverse(from, to, true);
+    }
+
+    /**
+     * Reverses the part of the tour from one city forwards to another
+     * 
+     * @param from          - int - the first city of the part
+     * @param to            - int - the last city of the part
+     * @param mayComplement - boolean - whether the rest of the tour may be
+     *                      reversed instead, if that's shorter
+     */
+    private void reverse(int from, int to, boolean mayComplement) {
+        if (from == to || next(to) == from) {
+            // Reversing the whole tour gives the same tour
+            return;
+        }
+        if (segment[from] == segment[to]) {
+            if (compare(from, to) < 0) {
+                reverseInside(from, to);
+                return;
+            }
+            // The part goes all the way round the tour, so the rest of it is inside
+            // this segment
+            int restFrom = next(to);
+            if (restFrom != from) {
+                reverseInside(restFrom, prev(from));
+            }
+            return;
+        }
+        int count = Math.floorMod(rank[segment[to]] - rank[segment[from]], numSegments) + 1;
+        if (mayComplement && count * 2 > numSegments + 1) {
+            reverse(next(to), prev(from), false);
+            return;
+        }
+        splitBefore(from);
+        if (segment[from] == segment[to]) {
+            // from was moved into the segment to is in
+            reverseInside(from, to);
+            return;
+        }
+        splitAfter(to);
+        reverseSegments(segment[from], segment[to]);
+    }
+
+    /**
+     * Reverses a run of whole segments, by flipping their reversed bits and
+     * reversing their order
+     * 
+     * @param first - int - the first segment of the run
+     * @param last  - int - the last segment of the run
+     */
+    private void reverseSegments(int first, int last) {
+        int before = segPrev[first];
+        int after = segNext[last];
+        int count = 0;
+        for (int s = first;; s = segNext[s]) {
+            segmentScratch[count++] = s;
+            if (s == last) {
+                break;
+            }
+        }
+        int firstRank = rank[first];
+        for (int i = 0; i < count; i++) {
+            int s = segmentScratch[count - 1 - i];
+            reversed[s] = !reversed[s];
+            rank[s] = (firstRank + i) % numSegments;
+            segPrev[s] = i == 0 ? before : segmentScratch[count - i];
+            segNext[s] = i == count - 1 ? after : segmentScratch[count - 2 - i];
+        }
+        segNext[before] = last;
+        segPrev[after] = first;
+    }
+
+    /**
+     * Reverses a part of the tour that is inside one segment, by relinking its
+     * cities and swapping their sequence numbers
+     * 
+     * @param from - int - the first city of the part
+     * @param to   - int - the last city of the part, no earlier in the segment
+     */
+    private void reverseInside(int from, int to) {
+        int s = segment[from];
+        // The same cities, in the order they're linked in
+        int u = reversed[s] ? to : from;
+        int v = reversed[s] ? from : to;
+        int length = 0;
+        for (int c = u;; c = succ[c]) {
+            scratch[length++] = c;
+            if (c == v) {
+                break;
+            }
+        }
+        for (int i = 0; i < length / 2; i++) {
+            int a = scratch[i];
+            int b = scratch[length - 1 - i];
+            int swap = sequence[a];
+            sequence[a] = sequence[b];
+            sequence[b] = swap;
+        }
+        int before = pred[u];
+        int after = succ[v];
+        for (int i = 0; i < length; i++) {
+            int c = scratch[i];
+            pred[c] = i == length - 1 ? before : scratch[i + 1];
+            succ[c] = i == 0 ? after : scratch[i - 1];
+        }
+        if (before == -1) {
+            head[s] = v;
+        } else {
+            succ[before] = v;
+        }
+        if (after == -1) {
+            tail[s] = u;
+        } else {
+            pred[after] = u;
+        }
+    }
+
+    /**
+     * Makes a city the first of a segment, by moving either the cities before it
+     * to the end of the segment before, or it and the cities after it to the
+     * start of the segment after
+     * 
+     * @param c - int - the city
+     */
+    private void splitBefore(int c) {
+        int s = segment[c];
+        int before = index(c);
+        if (before == 0) {
+            return;
+        }
+        if (before <= size[s] - before) {
+            moveToPrev(s, before);
+        } else {
+            moveToNext(s, size[s] - before);
+        }
+    }
+
+    /**
+     * Makes a city the last of a segment, by moving either the cities after it to
+     * the start of the segment after, or it and the cities before it to the end
+     * of the segment before
+     * 
+     * @param c - int - the city
+     */
+    private void splitAfter(int c) {
+        int s = segment[c];
+        int upTo = index(c) + 1;
+        if (upTo == size[s]) {
+            return;
+        }
+        if (size[s] - upTo <= upTo) {
+            moveToNext(s, size[s] - upTo);
+        } else {
+            moveToPrev(s, upTo);
+        }
+    }
+
+    /**
+     * Moves the first cities of a segment to the end of the segment before it
+     * 
+     * @param s     - int - the segment
+     * @param count - int - how many cities to move, fewer than the segment has
+     */
+    private void moveToPrev(int s, int count) {
+        int t = segPrev[s];
+        for (int k = 0; k < count; k++) {
+            int c = first(s);
+            if (reversed[s]) {
+                tail[s] = pred[c];
+                succ[tail[s]] = -1;
+            } else {
+                head[s] = succ[c];
+                pred[head[s]] = -1;
+            }
+            if (reversed[t]) {
+                int h = head[t];
+                pred[h] = c;
+                succ[c] = h;
+                pred[c] = -1;
+                sequence[c] = sequence[h] - 1;
+                head[t] = c;
+            } else {
+                int l = tail[t];
+                succ[l] = c;
+                pred[c] = l;
+                succ[c] = -1;
+                sequence[c] = sequence[l] + 1;
+                tail[t] = c;
+            }
+            segment[c] = t;
+        }
+        moved(s, t, count);
+    }
+
+    /**
+     * Moves the last cities of a segment to the start of the segment after it
+     * 
+     * @param s     - int - the segment
+     * @param count - int - how many cities to move, fewer than the segment has
+     */
+    private void moveToNext(int s, int count) {
+        int t = segNext[s];
+        for (int k = 0; k < count; k++) {
+            int c = last(s);
+            if (reversed[s]) {
+                head[s] = succ[c];
+                pred[head[s]] = -1;
+            } else {
+                tail[s] = pred[c];
+                succ[tail[s]] = -1;
+            }
+            if (reversed[t]) {
+                int l = tail[t];
+                succ[l] = c;
+                pred[c] = l;
+                succ[c] = -1;
+                sequence[c] = sequence[l] + 1;
+                tail[t] = c;
+            } else {
+                int h = head[t];
+                pred[h] = c;
+                succ[c] = h;
+                pred[c] = -1;
+                sequence[c] = sequence[h] - 1;
+                head[t] = c;
+            }
+            segment[c] = t;
+        }
+        moved(s, t, count);
+    }
+
+    /**
+     * Updates the sizes of two segments after cities are moved between them, and
+     * marks the tour for rebuilding if the segments have become too uneven
+     * 
+     * @param from  - int - the segment the cities came from
+     * @param to    - int - the segment they went to
+     * @param count - int - how many cities were moved
+     */
+    private void moved(int from, int to, int count) {
+        size[from] -= count;
+        size[to] += count;
+        if (size[to] > MAX_GROWTH * groupSize || Math.abs(sequence[head[to]]) > MAX_SEQUENCE
+                || Math.abs(sequence[tail[to]]) > MAX_SEQUENCE) {
+            rebuild = true;
+        }
+    }
+
+    /**
+     * Gets how many cities come before a city in its segment, going forwards
+     * 
+     * @param c - int - the city
+     * @return int - the number of cities before it
+     */
+    private int index(int c) {
+        int s = segment[c];
+        // The sequence numbers in a segment are always consecutive
+        return reversed[s] ? sequence[tail[s]] - sequence[c] : sequence[c] - sequence[head[s]];
+    }
+
+    /**
+     * Gets the first city of a segment, going forwards
+     * 
+     * @param s - int - the segment
+     * @return int - the first city
+     */
+    private int first(int s) {
+        return reversed[s] ? tail[s] : head[s];
+    }
+
+    /**
+     * Gets the last city of a segment, going forwards
+     * 
+     * @param s - int - the segment
+     * @return int - the last city
+     */
+    private int last(int s) {
+        return reversed[s] ? head[s] : tail[s];
+    }
+
+    /**
+     * Compares where two cities are, in the order of the segments' ranks and then
+     * forwards through each segment
+     * 
+     * @param a - int - the first city
+     * @param b - int - the second city
+     * @return int - negative if a comes first, 0 if they're the same city, or
+     *         positive if b comes first
+     */
+    private int compare(int a, int b) {
+        int sa = segment[a];
+        int sb = segment[b];
+        if (sa != sb) {
+            return Integer.compare(rank[sa], rank[sb]);
+        }
+        return reversed[sa] ? Integer.compare(sequence[b], sequence[a]) : Integer.compare(sequence[a], sequence[b]);
+    }
+}
@@ -18,6 +18,7 @@ import java.awt.BasicStroke;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 
 public class XYLinePlot extends ApplicationFrame{
+    private static final long serialVersionUID = 1L;
     JFreeChart xylineChart;
     public XYLinePlot(String applicationTitle , String plotTitle, double[][] x, double[][]y, String[] datasetName, int lowerYBound ) {
         super(applicationTitle);
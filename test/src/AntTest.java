@@ -0,0 +1,137 @@
+package src;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class AntTest extends TestCase {
+    // A sparse graph of 4 cities - a ring 0-1-2-3-0, with a chord from 0 to 2
+    private static final int[][] RING_WITH_CHORD = { { 0, 1, 5 }, { 1, 2, 5 }, { 2, 3, 5 }, { 3, 0, 5 },
+            { 0, 2, 1 } };
+    // A sparse graph of 4 cities where every path goes through city 0, so no
+    // tour can visit every city and get back
+    private static final int[][] STAR = { { 0, 1, 1 }, { 0, 2, 1 }, { 0, 3, 1 } };
+
+    private File graphFile;
+
+    @Override
+    protected void tearDown() {
+        if (graphFile != null) {
+            graphFile.delete();
+        }
+    }
+
+    /**
+     * Writes a symmetric sparse graph as TSPLIB XML and loads it, without a cache
+     * 
+     * @param aco   - AntColonyOptimiser - the optimiser to set the graph up with
+     * @param n     - int - the number of cities
+     * @param edges - int[][] - each path, as { from, to, cost }
+     * @return Graph - the loaded graph
+     * @throws Exception - if the graph can't be written or read
+     */
+    private Graph loadGraph(AntColonyOptimiser aco, int n, int[][] edges) throws Exception {
+        graphFile = File.createTempFile("anttest", ".xml");
+        try (FileWriter out = new FileWriter(graphFile)) {
+            out.write("<?xml version=\"1.0\"?>\n<travellingSalesmanProblemInstance><graph>\n");
+            for (int i = 0; i < n; i++) {
+                out.write("<vertex>");
+                for (int[] e : edges) {
+                    if (e[0] == i || e[1] == i) {
+                        out.write("<edge cost=\"" + e[2] + "\">" + (e[0] == i ? e[1] : e[0]) + "</edge>");
+                    }
+                }
+                out.write("</vertex>\n");
+            }
+            out.write("</graph></travellingSalesmanProblemInstance>\n");
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        aco.setUseCache(false);
+        return aco.setUpGraph(graphFile);
+    }
+
+    public void testTourOfEveryCityBackToTheStartIsComplete() throws Exception {
+        Graph g = loadGraph(new AntColonyOptimiser(), 4, RING_WITH_CHORD);
+        Ant a = new Ant(null, g);
+        a.setTourMemory(new int[] { 0, 1, 2, 3, 0 });
+        assertTrue(a.isTourComplete());
+        assertEquals(20.0, a.getTourLength());
+    }
+
+    public void testStuckTourIsIncomplete() throws Exception {
+        Graph g = loadGraph(new AntColonyOptimiser(), 4, RING_WITH_CHORD);
+        Ant a = new Ant(null, g);
+        // Took the chord, so city 1 (or 3) can't be visited without going back
+        a.setTourMemory(new int[] { 0, 2, 3, 0 });
+        assertFalse(a.isTourComplete());
+    }
+
+    public void testTourWithoutAPathBackIsIncomplete() throws Exception {
+        Graph g = loadGraph(new AntColonyOptimiser(), 4, RING_WITH_CHORD);
+        Ant a = new Ant(null, g);
+        // Every city is visited, but there's no path from 3 back to 1
+        a.setTourMemory(new int[] { 1, 0, 2, 3, 1 });
+        assertFalse(a.isTourComplete());
+    }
+
+    public void testAntsOnlyBuildCompleteToursOrReportThem() throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setSeed(1);
+        Graph g = loadGraph(aco, 4, RING_WITH_CHORD);
+        aco.initialisePheromone(g);
+        ParallelColony colony = new ParallelColony(g, aco, 20, 1, new Random(1));
+        colony.updateChoiceInfo(1, 2);
+        colony.constructTours(20);
+        for (Ant a : colony.getAnts()) {
+            int[] tour = a.getTourMemory();
+            // A tour counted as complete has every city once, and the real length
+            if (a.isTourComplete()) {
+                assertEquals(5, tour.length);
+                assertEquals(20.0, a.getFitness());
+            } else {
+                assertTrue(tour.length < 5 || !g.hasPath(tour[3], tour[4]));
+            }
+        }
+        colony.shutdown();
+    }
+
+    public void testBestTourIgnoresStuckAnts() throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setSeed(1);
+        Graph g = loadGraph(aco, 4, RING_WITH_CHORD);
+        aco.initialisePheromone(g);
+        // The only whole tour is the ring, even though stuck ants' tours are shorter
+        assertEquals(20.0, aco.runAntColonySim(g, 10, 0.1, 1, 2, 1, 200, true, 3, false, false));
+    }
+
+    public void testTourLengthIsAddedUpAsTheTourIsBuilt() throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setSeed(1);
+        aco.setUseCache(false);
+        Graph g = aco.setUpGraph(new File("brazil58.xml"));
+        aco.initialisePheromone(g);
+        ParallelColony colony = new ParallelColony(g, aco, 10, 1, new Random(1));
+        colony.updateChoiceInfo(1, 2);
+        colony.constructTours(10);
+        for (Ant a : colony.getAnts()) {
+            assertTrue(a.isTourComplete());
+            // The running total is the same as walking the whole tour again
+            assertEquals(a.calculateOverallFitness(), a.getTourLength(), 1e-9);
+            assertEquals(g.calculateTourLength(a.getTourMemory()), a.getFitness(), 1e-9);
+        }
+        colony.shutdown();
+    }
+
+    public void testNoTourWhenEveryAntGetsStuck() throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setSeed(1);
+        Graph g = loadGraph(aco, 4, STAR);
+        aco.initialisePheromone(g);
+        assertEquals(AntColonyOptimiser.NO_TOUR, aco.runAntColonySim(g, 10, 0.1, 1, 2, 1, 200, true, 3, false,
+                false));
+    }
+}
@@ -0,0 +1,70 @@
+package src;
+
+import junit.framework.TestCase;
+
+public class CoordinateDistanceMatrixTest extends TestCase {
+
+    /**
+     * Works out the distance between two cities
+     * 
+     * @param type - CoordinateDistanceMatrix.Type - how the distance is worked
+     *             out
+     * @param x1   - double - the first city's x coordinate
+     * @param y1   - double - the first city's y coordinate
+     * @param x2   - double - the second city's x coordinate
+     * @param y2   - double - the second city's y coordinate
+     * @return double - the distance
+     */
+    private static double distance(CoordinateDistanceMatrix.Type type, double x1, double y1, double x2, double y2) {
+        CoordinateDistanceMatrix m = new CoordinateDistanceMatrix(type, new double[] { x1, x2 },
+                new double[] { y1, y2 });
+        assertEquals(m.get(0, 1), m.get(1, 0));
+        return m.get(0, 1);
+    }
+
+    public void testNoPathToItself() {
+        CoordinateDistanceMatrix m = new CoordinateDistanceMatrix(CoordinateDistanceMatrix.Type.EUC_2D,
+                new double[] { 0, 3 }, new double[] { 0, 4 });
+        assertEquals(Graph.NO_PATH, m.get(1, 1));
+    }
+
+    public void testEuclideanRoundsToTheNearest() {
+        assertEquals(5.0, distance(CoordinateDistanceMatrix.Type.EUC_2D, 0, 0, 3, 4));
+        // 1.414
+        assertEquals(1.0, distance(CoordinateDistanceMatrix.Type.EUC_2D, 0, 0, 1, 1));
+        // 3.606
+        assertEquals(4.0, distance(CoordinateDistanceMatrix.Type.EUC_2D, 0, 0, 2, 3));
+    }
+
+    public void testCeilingRoundsUp() {
+        assertEquals(5.0, distance(CoordinateDistanceMatrix.Type.CEIL_2D, 0, 0, 3, 4));
+        // 1.414
+        assertEquals(2.0, distance(CoordinateDistanceMatrix.Type.CEIL_2D, 0, 0, 1, 1));
+    }
+
+    public void testPseudoEuclideanRoundsUp() {
+        // sqrt(100 / 10) is 3.162, which rounds to 3 but is then rounded up
+        assertEquals(4.0, distance(CoordinateDistanceMatrix.Type.ATT, 0, 0, 10, 0));
+        // sqrt(400 / 10) is 6.325
+        assertEquals(7.0, distance(CoordinateDistanceMatrix.Type.ATT, 0, 0, 0, 20));
+        // sqrt(2500 / 10) is 15.811, which already rounds up
+        assertEquals(16.0, distance(CoordinateDistanceMatrix.Type.ATT, 0, 0, 30, 40));
+        // sqrt(1000 / 10) is exactly 10
+        assertEquals(10.0, distance(CoordinateDistanceMatrix.Type.ATT, 0, 0, 10, 30));
+    }
+
+    public void testGeographicReadsDegreesAndMinutes() {
+        // 1.30 is 1 degree 30 minutes, so 1.5 degrees along a meridian:
+        // 6378.388 * 1.5 * 3.141592 / 180 = 166.99, plus 1 and truncated
+        assertEquals(167.0, distance(CoordinateDistanceMatrix.Type.GEO, 0, 0, 1.30, 0));
+        // The same along the equator
+        assertEquals(167.0, distance(CoordinateDistanceMatrix.Type.GEO, 0, 0, 0, 1.30));
+        // Cities 1 to 4 of TSPLIB's burma14, against its published distances
+        double[] lat = { 16.47, 16.47, 20.09, 22.39 };
+        double[] lon = { 96.10, 94.44, 92.54, 93.37 };
+        CoordinateDistanceMatrix m = new CoordinateDistanceMatrix(CoordinateDistanceMatrix.Type.GEO, lat, lon);
+        assertEquals(153.0, m.get(0, 1));
+        assertEquals(510.0, m.get(0, 2));
+        assertEquals(706.0, m.get(0, 3));
+    }
+}
@@ -0,0 +1,183 @@
+package src;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class EliteHeapTest extends TestCase {
+    private Graph graph;
+
+    @Override
+    protected void setUp() throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setUseCache(false);
+        graph = aco.setUpGraph(new File("burma14.xml"));
+    }
+
+    /**
+     * Makes an ant that has built the given tour
+     * 
+     * @param tour - int[] - the ids of the cities, ending with the first again
+     * @return Ant - the ant
+     */
+    private Ant antWithTour(int[] tour) {
+        Ant a = new Ant(null, graph);
+        a.setTourMemory(tour);
+        return a;
+    }
+
+    /**
+     * Makes the tour that visits the cities in order of id, starting from one of
+     * them
+     * 
+     * @param start    - int - the first city
+     * @param forwards - boolean - whether the ids go up, rather than down
+     * @return int[] - the tour, ending with the first city again
+     */
+    private int[] orderedTour(int start, boolean forwards) {
+        int n = graph.getNumCities();
+        int[] tour = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            tour[i] = ((forwards ? start + i : start - i) % n + n) % n;
+        }
+        return tour;
+    }
+
+    public void testKeepsTheShortestTours() {
+        EliteHeap heap = new EliteHeap(2);
+        assertTrue(heap.offer(30, antWithTour(orderedTour(0, true))));
+        int[] second = orderedTour(0, true);
+        second[1] = 2;
+        second[2] = 1;
+        assertTrue(heap.offer(20, antWithTour(second)));
+        int[] third = orderedTour(0, true);
+        third[3] = 4;
+        third[4] = 3;
+        assertTrue(heap.offer(10, antWithTour(third)));
+        assertFalse(heap.offer(40, antWithTour(orderedTour(5, true))));
+        assertEquals(2, heap.size());
+        double total = heap.getLength(0) + heap.getLength(1);
+        assertEquals(30.0, total);
+    }
+
+    public void testRejectsTheSameTour() {
+        EliteHeap heap = new EliteHeap(5);
+        int[] tour = orderedTour(0, true);
+        double length = graph.calculateTourLength(tour);
+        assertTrue(heap.offer(length, antWithTour(tour)));
+        assertFalse(heap.offer(length, antWithTour(tour)));
+        assertEquals(1, heap.size());
+    }
+
+    public void testRejectsTheSameTourFromAnotherCity() {
+        EliteHeap heap = new EliteHeap(5);
+        int[] tour = orderedTour(0, true);
+        int[] rotated = orderedTour(6, true);
+        double length = graph.calculateTourLength(tour);
+        assertEquals(length, graph.calculateTourLength(rotated), 1e-9);
+        assertTrue(heap.offer(length, antWithTour(tour)));
+        assertFalse(heap.offer(length, antWithTour(rotated)));
+        assertEquals(1, heap.size());
+    }
+
+    public void testRejectsTheSameTourBackwardsOnASymmetricGraph() {
+        assertTrue(graph.isSymmetric());
+        EliteHeap heap = new EliteHeap(5);
+        int[] tour = orderedTour(0, true);
+        int[] reversed = orderedTour(3, false);
+        double length = graph.calculateTourLength(tour);
+        assertTrue(heap.offer(length, antWithTour(tour)));
+        assertFalse(heap.offer(length, antWithTour(reversed)));
+        assertEquals(1, heap.size());
+    }
+
+    public void testRejectsTheSameTourWithARoundingErrorInItsLength() {
+        EliteHeap heap = new EliteHeap(5);
+        int[] tour = orderedTour(0, true);
+        double length = graph.calculateTourLength(tour);
+        assertTrue(heap.offer(length, antWithTour(tour)));
+        assertFalse(heap.offer(length - 1e-9, antWithTour(orderedTour(4, true))));
+        assertEquals(1, heap.size());
+    }
+
+    public void testLargeHeapKeepsTheShortestDistinctTours() {
+        int n = graph.getNumCities();
+        Random random = new Random(1);
+        EliteHeap heap = new EliteHeap(50);
+        // Each distinct tour is offered several times, from different cities
+        int[][] distinct = new int[200][];
+        for (int t = 0; t < distinct.length; t++) {
+            distinct[t] = orderedTour(0, true);
+            for (int i = n - 1; i > 1; i--) {
+                int j = 1 + random.nextInt(i);
+                int swap = distinct[t][i];
+                distinct[t][i] = distinct[t][j];
+                distinct[t][j] = swap;
+            }
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int[] d : distinct) {
+                int shift = random.nextInt(n);
+                int[] rotated = new int[n + 1];
+                for (int i = 0; i <= n; i++) {
+                    rotated[i] = d[(i + shift) % n];
+                }
+                heap.offer(graph.calculateTourLength(rotated), antWithTour(rotated));
+            }
+        }
+        assertEquals(50, heap.size());
+        // The 50 shortest of the tours, counting any that are the same cycle once
+        List<int[]> unique = new ArrayList<>();
+        for (int[] d : distinct) {
+            boolean repeat = false;
+            for (int[] u : unique) {
+                repeat |= EliteHeap.sameTour(u, d, d.length, true);
+            }
+            if (!repeat) {
+                unique.add(d);
+            }
+        }
+        double[] expected = new double[unique.size()];
+        for (int t = 0; t < expected.length; t++) {
+            expected[t] = graph.calculateTourLength(unique.get(t));
+        }
+        Arrays.sort(expected);
+        double[] kept = new double[heap.size()];
+        for (int k = 0; k < heap.size(); k++) {
+            kept[k] = heap.getLength(k);
+            for (int m = k + 1; m < heap.size(); m++) {
+                assertFalse(EliteHeap.sameTour(heap.getTour(k), heap.getTour(m), heap.getTour(m).length, true));
+            }
+        }
+        Arrays.sort(kept);
+        for (int k = 0; k < kept.length; k++) {
+            assertEquals(expected[k], kept[k], 1e-6);
+        }
+    }
+
+    public void testKeepsDifferentToursOfTheSameLength() {
+        int[] tour = orderedTour(0, true);
+        int[] other = orderedTour(0, true);
+        other[1] = 2;
+        other[2] = 1;
+        assertFalse(EliteHeap.sameTour(tour, other, other.length, true));
+        EliteHeap heap = new EliteHeap(5);
+        // Offered as if they were the same length, so only the tours tell them apart
+        assertTrue(heap.offer(100, antWithTour(tour)));
+        assertTrue(heap.offer(100, antWithTour(other)));
+        assertEquals(2, heap.size());
+    }
+
+    public void testDirectionMattersOnAnAsymmetricGraph() {
+        int[] tour = orderedTour(0, true);
+        int[] reversed = orderedTour(0, false);
+        assertTrue(EliteHeap.sameTour(tour, reversed, reversed.length, true));
+        assertFalse(EliteHeap.sameTour(tour, reversed, reversed.length, false));
+        assertEquals(EliteHeap.hashTour(tour, tour.length, true),
+                EliteHeap.hashTour(reversed, reversed.length, true));
+    }
+}
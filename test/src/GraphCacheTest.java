@@ -0,0 +1,155 @@
+package src;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import junit.framework.TestCase;
+
+public class GraphCacheTest extends TestCase {
+    // Where each field of the header starts
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 4;
+    private static final int CITIES_AT = 8;
+    private static final int FLAGS_AT = 12;
+
+    private File dir;
+    private File source;
+    private GraphCache cache = new GraphCache();
+
+    @Override
+    protected void setUp() throws Exception {
+        // A copy of burma14, so its cache is written next to it in a directory of
+        // its own
+        dir = Files.createTempDirectory("graphcachetest").toFile();
+        source = new File(dir, "burma14.xml");
+        Files.copy(new File("burma14.xml").toPath(), source.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        cache.write(source, new GraphLoader().readXML(source));
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Overwrites an int in the cache file
+     * 
+     * @param at    - int - where the int starts
+     * @param value - int - the new value, written little-endian like the header
+     * @throws Exception - if the cache can't be written
+     */
+    private void patchInt(int at, int value) throws Exception {
+        try (RandomAccessFile f = new RandomAccessFile(cache.getCacheFile(source), "rw")) {
+            f.seek(at);
+            f.writeInt(Integer.reverseBytes(value));
+        }
+    }
+
+    public void testOpensMatchingCache() throws Exception {
+        Graph read = new GraphLoader().readXML(source);
+        Graph cached = cache.open(source);
+        assertNotNull(cached);
+        assertEquals(read.getNumCities(), cached.getNumCities());
+        for (int i = 0; i < read.getNumCities(); i++) {
+            for (int j = 0; j < read.getNumCities(); j++) {
+                assertEquals(read.getWeight(i, j), cached.getWeight(i, j));
+            }
+        }
+    }
+
+    public void testRejectsWrongMagic() throws Exception {
+        patchInt(MAGIC_AT, 0x12345678);
+        assertNull(cache.open(source));
+    }
+
+    public void testRejectsWrongVersion() throws Exception {
+        patchInt(VERSION_AT, 99);
+        assertNull(cache.open(source));
+    }
+
+    public void testRejectsWrongCityCount() throws Exception {
+        patchInt(CITIES_AT, 15);
+        assertNull(cache.open(source));
+    }
+
+    public void testRejectsNegativeCityCount() throws Exception {
+        // With the upper triangle flag cleared, -14 cities would need exactly as many
+        // entries as 14 - the size check alone doesn't catch it
+        patchInt(CITIES_AT, -14);
+        patchInt(FLAGS_AT, 1);
+        try (RandomAccessFile f = new RandomAccessFile(cache.getCacheFile(source), "rw")) {
+            f.setLength(32 + 14 * 14 * Float.BYTES);
+        }
+        assertNull(cache.open(source));
+    }
+
+    public void testRejectsUnknownFlags() throws Exception {
+        patchInt(FLAGS_AT, 1 | 2 | 4);
+        assertNull(cache.open(source));
+    }
+
+    public void testRejectsTruncatedCache() throws Exception {
+        File cacheFile = cache.getCacheFile(source);
+        try (RandomAccessFile f = new RandomAccessFile(cacheFile, "rw")) {
+            f.setLength(cacheFile.length() - 1);
+        }
+        assertNull(cache.open(source));
+        try (RandomAccessFile f = new RandomAccessFile(cacheFile, "rw")) {
+            f.setLength(10);
+        }
+        assertNull(cache.open(source));
+    }
+
+    public void testRejectsCacheOfChangedSource() throws Exception {
+        assertTrue(source.setLastModified(source.lastModified() - 60000));
+        assertNull(cache.open(source));
+    }
+
+    public void testWriteLeavesNoTemporaryFile() throws Exception {
+        cache.write(source, new GraphLoader().readXML(source));
+        String[] names = dir.list();
+        assertEquals(2, names.length);
+        assertTrue(cache.getCacheFile(source).exists());
+    }
+
+    public void testFailedWriteKeepsTheOldCacheAndLeavesNoTemporaryFile() throws Exception {
+        Graph g = new GraphLoader().readXML(source);
+        DistanceMatrix weights = g.getDistanceMatrix();
+        int n = weights.size();
+        // Fails partway through writing, after the first pass over the distances
+        g.setDistanceMatrix(new DistanceMatrix() {
+            private int reads;
+
+            @Override
+            public int size() {
+                return n;
+            }
+
+            @Override
+            public double get(int i, int j) {
+                if (++reads > 3 * n * n / 2) {
+                    throw new IllegalStateException("Read failed");
+                }
+                return weights.get(i, j);
+            }
+
+            @Override
+            public boolean isSymmetric() {
+                return weights.isSymmetric();
+            }
+        });
+        try {
+            cache.write(source, g);
+            fail("Wrote a cache it couldn't read the distances for");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(2, dir.list().length);
+        assertNotNull(cache.open(source));
+    }
+}
@@ -0,0 +1,240 @@
+package src;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class GraphTest extends TestCase {
+    // The options each storage mode is set up with
+    private static final String[][] MODES = { {}, { "compact=true" }, { "offheap=true" },
+            { "offheap=true", "compact=true" }, { "lazy=true" }, { "compact=true", "lazy=true" } };
+    // How far a float can be from the double it was stored from, relatively
+    private static final double FLOAT_TOLERANCE = 1e-6;
+
+    private Graph graph;
+
+    @Override
+    protected void tearDown() {
+        if (graph != null) {
+            graph.close();
+        }
+    }
+
+    /**
+     * Loads brazil58, without a cache, in a storage mode
+     * 
+     * @param options - String[] - the options to set, as on the command line
+     * @return Graph - the graph
+     * @throws Exception - if it can't be read
+     */
+    private static Graph brazil(String... options) throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setUseCache(false);
+        for (String option : options) {
+            aco.applyOption(option);
+        }
+        return aco.setUpGraph(new File("brazil58.xml"));
+    }
+
+    /**
+     * Makes an asymmetric graph, where the path from i to j is 10 * i + j + 1 long
+     * 
+     * @param n - int - the number of cities
+     * @return Graph - the graph
+     */
+    private static Graph asymmetric(int n) {
+        Graph g = new Graph();
+        ArrayDistanceMatrix weights = new ArrayDistanceMatrix(n);
+        for (int i = 0; i < n; i++) {
+            g.addCity(new City(Integer.toString(i), i));
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    weights.set(i, j, 10 * i + j + 1);
+                }
+            }
+        }
+        g.setDistanceMatrix(weights);
+        return g;
+    }
+
+    /**
+     * Sets every path's pheromone to a value that depends on the path, lays some
+     * more along a tour and evaporates it all, as an iteration would, then works
+     * out the choice info again
+     * 
+     * @param g - Graph - the graph
+     */
+    private static void runIteration(Graph g) {
+        int n = g.getNumCities();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    g.setPheromone(i, j, 1 + (Math.min(i, j) * 31 + Math.max(i, j) * 17) % 7 / 10.0);
+                }
+            }
+        }
+        g.computeHeuristic(2);
+        g.computeChoiceInfo(0, n, 1.5);
+        g.choiceInfoComputed(1.5);
+        int[] tour = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            tour[i] = (i * 7) % n;
+        }
+        tour[n] = tour[0];
+        g.updatePheromoneOnTour(tour, 0.25);
+        g.evaporatePaths(0.3);
+        if (!g.refreshChoiceInfo(1.5)) {
+            g.computeChoiceInfo(0, n, 1.5);
+            g.choiceInfoComputed(1.5);
+        }
+    }
+
+    /**
+     * Reads a choice info entry, from whichever form the graph holds it in
+     * 
+     * @param g - Graph - the graph
+     * @param i - int - the origin city's id
+     * @param j - int - the destination city's id
+     * @return double - the choice info
+     */
+    private static double choiceInfo(Graph g, int i, int j) {
+        long idx = (long) i * g.getNumCities() + j;
+        if (g.getChoiceInfoMatrix() != null) {
+            return g.getChoiceInfoMatrix()[(int) idx];
+        }
+        if (g.getCompactChoiceInfoMatrix() != null) {
+            return g.getCompactChoiceInfoMatrix()[(int) idx];
+        }
+        return g.getOffHeapChoiceInfoMatrix().get(idx);
+    }
+
+    public void testPackedIndicesAreSharedBothWaysAndCoverTheTriangle() throws Exception {
+        graph = brazil();
+        assertTrue(graph.isSymmetric());
+        int n = graph.getNumCities();
+        assertEquals((long) n * (n + 1) / 2, graph.pheromoneSize());
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                long idx = graph.getPheromoneIndex(i, j);
+                assertEquals(idx, graph.getPheromoneIndex(j, i));
+                assertTrue(idx >= 0 && idx < graph.pheromoneSize());
+                assertTrue("Index " + idx + " is used twice", seen.add(idx));
+            }
+        }
+    }
+
+    public void testAsymmetricIndicesAreRowMajor() {
+        graph = asymmetric(6);
+        assertFalse(graph.isSymmetric());
+        assertEquals(36, graph.pheromoneSize());
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 6; j++) {
+                assertEquals(i * 6L + j, graph.getPheromoneIndex(i, j));
+            }
+        }
+    }
+
+    public void testStorageModesAgree() throws Exception {
+        Graph reference = brazil();
+        runIteration(reference);
+        int n = reference.getNumCities();
+        for (String[] mode : MODES) {
+            graph = brazil(mode);
+            runIteration(graph);
+            String name = String.join(" ", mode);
+            // Lazy evaporation leaves the shared scale out of the choice info, which
+            // multiplies every entry by the same amount and so doesn't change which
+            // path is picked
+            double scale = choiceInfo(graph, 0, 1) / choiceInfo(reference, 0, 1);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    assertEquals(name, reference.getWeight(i, j), graph.getWeight(i, j));
+                    if (i == j) {
+                        continue;
+                    }
+                    double p = reference.getPheromone(i, j);
+                    assertEquals(name + " pheromone " + i + " " + j, p, graph.getPheromone(i, j),
+                            p * FLOAT_TOLERANCE);
+                    assertEquals(graph.getPheromone(i, j), graph.getPheromone(j, i));
+                    double c = choiceInfo(reference, i, j) * scale;
+                    assertEquals(name + " choice info " + i + " " + j, c, choiceInfo(graph, i, j),
+                            c * FLOAT_TOLERANCE * 4);
+                }
+            }
+            graph.close();
+        }
+        reference.close();
+        graph = null;
+    }
+
+    public void testAsymmetricOffHeapAgrees() {
+        Graph reference = asymmetric(6);
+        graph = asymmetric(6);
+        graph.setOffHeap(true);
+        runIteration(reference);
+        runIteration(graph);
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 6; j++) {
+                if (i != j) {
+                    assertEquals(reference.getPheromone(i, j), graph.getPheromone(i, j), 1e-12);
+                    assertEquals(choiceInfo(reference, i, j), choiceInfo(graph, i, j), 1e-12);
+                }
+            }
+        }
+        // The path one way has its own pheromone
+        assertFalse(graph.getPheromoneIndex(1, 2) == graph.getPheromoneIndex(2, 1));
+    }
+
+    public void testCandidatePheromoneKeepsTheCandidatePaths() throws Exception {
+        Graph reference = brazil();
+        runIteration(reference);
+        graph = brazil("candidatepheromone=true", "candidates=8");
+        assertTrue(graph.isCandidatePheromone());
+        runIteration(graph);
+        int n = graph.getNumCities();
+        int[] offsets = graph.getPathOffsets();
+        int[] targets = graph.getPathTargets();
+        for (int i = 0; i < n; i++) {
+            assertTrue(offsets[i + 1] - offsets[i] >= 8);
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int j = targets[k];
+                long idx = graph.getPheromoneIndex(i, j);
+                assertTrue(idx >= 0 && idx < graph.pheromoneSize());
+                assertEquals(idx, graph.getPheromoneIndex(j, i));
+                double p = reference.getPheromone(i, j);
+                assertEquals(p, graph.getPheromone(i, j), p * FLOAT_TOLERANCE);
+            }
+        }
+        // Far fewer entries than the whole triangle
+        assertTrue(graph.pheromoneSize() < reference.pheromoneSize() / 2);
+        reference.close();
+    }
+
+    public void testOffHeapMatrixChecksBounds() {
+        try (OffHeapMatrix m = OffHeapMatrix.allocate(10, false)) {
+            m.set(9, 1);
+            assertEquals(1.0, m.get(9));
+            try {
+                m.get(10);
+                fail("Read past the end");
+            } catch (IndexOutOfBoundsException e) {
+                // Expected
+            }
+            try {
+                m.set(-1, 1);
+                fail("Wrote before the start");
+            } catch (IndexOutOfBoundsException e) {
+                // Expected
+            }
+        }
+        try {
+            OffHeapMatrix.allocate(-1, true);
+            fail("Allocated a negative size");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
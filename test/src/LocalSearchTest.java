@@ -0,0 +1,121 @@
+package src;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LocalSearchTest extends TestCase {
+    private File tspFile;
+
+    @Override
+    protected void tearDown() {
+        if (tspFile != null) {
+            tspFile.delete();
+        }
+    }
+
+    /**
+     * Makes a random tour, as an ant stores it - every city, then the first again
+     * 
+     * @param n      - int - the number of cities
+     * @param random - Random - where the order comes from
+     * @return int[] - the tour
+     */
+    private static int[] randomTour(int n, Random random) {
+        int[] tour = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            tour[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = tour[i];
+            tour[i] = tour[j];
+            tour[j] = swap;
+        }
+        tour[n] = tour[0];
+        return tour;
+    }
+
+    /**
+     * Improves a few random tours with some of the moves, checking that each is
+     * still a tour of every city from the same start, is no longer than before,
+     * and that the length the local search worked out is its real length
+     * 
+     * @param g      - Graph - the graph to improve tours on
+     * @param moves  - boolean[] - which moves to use, indexed like
+     *               LocalSearch.TWO_OPT
+     * @param rounds - int - how many tours to improve
+     */
+    private static void checkImprove(Graph g, boolean[] moves, int rounds) {
+        LocalSearch ls = new LocalSearch(g);
+        ls.setMoves(moves[LocalSearch.TWO_OPT], moves[LocalSearch.OR_OPT], moves[LocalSearch.THREE_OPT],
+                moves[LocalSearch.LIN_KERNIGHAN]);
+        int n = g.getNumCities();
+        Random random = new Random(1);
+        for (int round = 0; round < rounds; round++) {
+            int[] tour = randomTour(n, random);
+            int start = tour[0];
+            double before = g.calculateTourLength(tour);
+            double after = ls.improve(tour, before);
+            assertEquals(start, tour[0]);
+            assertEquals(start, tour[n]);
+            boolean[] seen = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                assertFalse("City " + tour[i] + " is visited twice", seen[tour[i]]);
+                seen[tour[i]] = true;
+            }
+            assertTrue(after <= before);
+            assertEquals(g.calculateTourLength(tour), after, 1e-6 * before);
+        }
+    }
+
+    /**
+     * Loads brazil58, without a cache
+     * 
+     * @return Graph - the graph
+     * @throws Exception - if it can't be read
+     */
+    private static Graph brazil() throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setUseCache(false);
+        return aco.setUpGraph(new File("brazil58.xml"));
+    }
+
+    public void testTwoOpt() throws Exception {
+        checkImprove(brazil(), new boolean[] { true, false, false, false }, 5);
+    }
+
+    public void testOrOpt() throws Exception {
+        checkImprove(brazil(), new boolean[] { false, true, false, false }, 5);
+    }
+
+    public void testThreeOpt() throws Exception {
+        checkImprove(brazil(), new boolean[] { false, false, true, false }, 5);
+    }
+
+    public void testLinKernighan() throws Exception {
+        checkImprove(brazil(), new boolean[] { false, false, false, true }, 5);
+    }
+
+    public void testEveryMove() throws Exception {
+        checkImprove(brazil(), new boolean[] { true, true, true, true }, 5);
+    }
+
+    public void testTwoLevelTour() throws Exception {
+        // Enough random cities for the tour to be held as a two-level list
+        int n = LocalSearch.TWO_LEVEL_CITIES;
+        tspFile = File.createTempFile("localsearchtest", ".tsp");
+        Random random = new Random(2);
+        try (FileWriter out = new FileWriter(tspFile)) {
+            out.write("NAME: random\nTYPE: TSP\nDIMENSION: " + n + "\nEDGE_WEIGHT_TYPE: EUC_2D\nNODE_COORD_SECTION\n");
+            for (int i = 1; i <= n; i++) {
+                out.write(i + " " + random.nextInt(100000) + " " + random.nextInt(100000) + "\n");
+            }
+            out.write("EOF\n");
+        }
+        Graph g = new AntColonyOptimiser().setUpGraph(tspFile);
+        checkImprove(g, new boolean[] { true, true, true, true }, 1);
+    }
+}
@@ -0,0 +1,173 @@
+package src;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+public class MaxMinTest extends TestCase {
+    // The options each storage mode is set up with
+    private static final String[][] MODES = { {}, { "compact=true" }, { "lazy=true" }, { "offheap=true" },
+            { "compact=true", "lazy=true" } };
+    // How far a float can be from the double it was stored from, relatively
+    private static final double FLOAT_TOLERANCE = 1e-6;
+
+    private Graph graph;
+
+    @Override
+    protected void tearDown() {
+        if (graph != null) {
+            graph.close();
+        }
+    }
+
+    /**
+     * Loads brazil58, without a cache, in a storage mode
+     * 
+     * @param options - String[] - the options to set, as on the command line
+     * @return Graph - the graph
+     * @throws Exception - if it can't be read
+     */
+    private static Graph brazil(String... options) throws Exception {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setUseCache(false);
+        for (String option : options) {
+            aco.applyOption(option);
+        }
+        return aco.setUpGraph(new File("brazil58.xml"));
+    }
+
+    /**
+     * Sets every path's pheromone to a value that depends on the path, spread
+     * between 0 and 2, then evaporates it twice so a lazy graph's stored values
+     * and real ones differ
+     * 
+     * @param g - Graph - the graph
+     */
+    private static void spreadPheromone(Graph g) {
+        int n = g.getNumCities();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    g.setPheromone(i, j, (Math.min(i, j) * 31 + Math.max(i, j) * 17) % 21 / 10.0);
+                }
+            }
+        }
+        g.evaporatePaths(0.2);
+        g.evaporatePaths(0.2);
+    }
+
+    /**
+     * Makes a graph of cities that are all the same distance apart, so every tour
+     * is as long as every other and the first one found is never improved on
+     * 
+     * @param n - int - the number of cities
+     * @return Graph - the graph
+     */
+    private static Graph evenlySpaced(int n) {
+        Graph g = new Graph();
+        ArrayDistanceMatrix weights = new ArrayDistanceMatrix(n);
+        for (int i = 0; i < n; i++) {
+            g.addCity(new City(Integer.toString(i), i));
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    weights.set(i, j, 1);
+                }
+            }
+        }
+        g.setDistanceMatrix(weights);
+        return g;
+    }
+
+    public void testBoundsHoldInEveryStorageMode() throws Exception {
+        double min = 0.3;
+        double max = 1.1;
+        for (String[] mode : MODES) {
+            graph = brazil(mode);
+            spreadPheromone(graph);
+            graph.boundPheromone(min, max);
+            String name = String.join(" ", mode);
+            int n = graph.getNumCities();
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        double p = graph.getPheromone(i, j);
+                        assertTrue(name + " " + p, p >= min * (1 - FLOAT_TOLERANCE));
+                        assertTrue(name + " " + p, p <= max * (1 + FLOAT_TOLERANCE));
+                    }
+                }
+            }
+            graph.close();
+        }
+        graph = null;
+    }
+
+    public void testFullSmoothingResetsEveryPath() throws Exception {
+        for (String[] mode : MODES) {
+            graph = brazil(mode);
+            spreadPheromone(graph);
+            graph.smoothPheromone(0.75, 1);
+            int n = graph.getNumCities();
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        assertEquals(String.join(" ", mode), 0.75, graph.getPheromone(i, j), 0.75 * FLOAT_TOLERANCE);
+                    }
+                }
+            }
+            graph.close();
+        }
+        graph = null;
+    }
+
+    public void testHalfSmoothingMovesHalfwayUnderLazyScaling() throws Exception {
+        for (String[] mode : MODES) {
+            graph = brazil(mode);
+            spreadPheromone(graph);
+            int n = graph.getNumCities();
+            double[] before = new double[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        before[i * n + j] = graph.getPheromone(i, j);
+                    }
+                }
+            }
+            graph.smoothPheromone(3, 0.5);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        double expected = (before[i * n + j] + 3) / 2;
+                        assertEquals(String.join(" ", mode), expected, graph.getPheromone(i, j),
+                                expected * FLOAT_TOLERANCE);
+                    }
+                }
+            }
+            // Evaporation after smoothing still works from the smoothed values
+            graph.evaporatePaths(0.5);
+            double expected = (before[1] + 3) / 4;
+            assertEquals(String.join(" ", mode), expected, graph.getPheromone(0, 1), expected * FLOAT_TOLERANCE);
+            graph.close();
+        }
+        graph = null;
+    }
+
+    public void testRestartsAfterIterationsWithoutImprovement() {
+        AntColonyOptimiser aco = new AntColonyOptimiser();
+        aco.setSeed(1);
+        aco.applyOption("mmas=true");
+        aco.applyOption("restart=3");
+        graph = evenlySpaced(5);
+        aco.initialisePheromone(graph);
+        // 10 iterations of 5 ants. The first sets the bounds, and as no tour is ever
+        // shorter, every third one after it restarts.
+        assertEquals(5.0, aco.runAntColonySim(graph, 5, 0.1, 1, 2, 1, 50, false, 0, false, false));
+        assertEquals(3, aco.getRestarts());
+        aco.applyOption("restart=4");
+        aco.initialisePheromone(graph);
+        aco.runAntColonySim(graph, 5, 0.1, 1, 2, 1, 50, false, 0, false, false);
+        assertEquals(2, aco.getRestarts());
+        aco.applyOption("restart=10");
+        aco.runAntColonySim(graph, 5, 0.1, 1, 2, 1, 50, false, 0, false, false);
+        assertEquals(0, aco.getRestarts());
+    }
+}
@@ -0,0 +1,115 @@
+package src;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class RowCachedDistanceMatrixTest extends TestCase {
+    private static final int CITIES = 50;
+    private static final int K = 4;
+
+    private ArrayDistanceMatrix source;
+    private int[] lists;
+
+    @Override
+    protected void setUp() {
+        source = new ArrayDistanceMatrix(CITIES);
+        for (int i = 0; i < CITIES; i++) {
+            for (int j = 0; j < CITIES; j++) {
+                if (i != j) {
+                    source.set(i, j, 1000 * i + j);
+                }
+            }
+        }
+        // The next K cities round from each city
+        lists = new int[CITIES * K];
+        for (int i = 0; i < CITIES; i++) {
+            for (int pos = 0; pos < K; pos++) {
+                lists[i * K + pos] = (i + pos + 1) % CITIES;
+            }
+        }
+    }
+
+    public void testPassesThroughUntilNeighboursAreSet() {
+        RowCachedDistanceMatrix cache = new RowCachedDistanceMatrix(source);
+        assertEquals(1002.0, cache.get(1, 2));
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    public void testHitsMissesAndEvictions() {
+        RowCachedDistanceMatrix cache = new RowCachedDistanceMatrix(source);
+        cache.setNeighbours(lists, K, 2);
+        // The first lookup in a row fills it, and the rest of the row is then cached
+        assertEquals(1002.0, cache.get(1, 2));
+        assertEquals(1005.0, cache.get(1, 5));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        // A path off the list goes to the source, and isn't counted
+        assertEquals(1020.0, cache.get(1, 20));
+        assertEquals(2, cache.getHits() + cache.getMisses());
+        // Two rows fit
+        assertEquals(2003.0, cache.get(2, 3));
+        assertEquals(0, cache.getEvictions());
+        // A third evicts one
+        assertEquals(3004.0, cache.get(3, 4));
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        // Going round all the cities keeps evicting, and every distance is still right
+        for (int i = 0; i < CITIES; i++) {
+            for (int pos = 0; pos < K; pos++) {
+                int j = lists[i * K + pos];
+                assertEquals(source.get(i, j), cache.get(i, j));
+            }
+        }
+        assertTrue(cache.getEvictions() >= CITIES - 2);
+    }
+
+    public void testRecentlyUsedRowGetsASecondChance() {
+        RowCachedDistanceMatrix cache = new RowCachedDistanceMatrix(source);
+        cache.setNeighbours(lists, K, 2);
+        cache.get(1, 2);
+        cache.get(2, 3);
+        // Both rows are marked used, so the hand clears them both and evicts row 1.
+        // Row 3 now sits where row 1 was.
+        cache.get(3, 4);
+        long misses = cache.getMisses();
+        // Row 2 is still cached
+        cache.get(2, 4);
+        assertEquals(misses, cache.getMisses());
+        // Using row 3 again saves it, so the next new row evicts row 2 instead
+        cache.get(3, 5);
+        cache.get(4, 5);
+        misses = cache.getMisses();
+        cache.get(3, 6);
+        assertEquals(misses, cache.getMisses());
+    }
+
+    public void testConcurrentReadsSeeTheRightDistances() throws Exception {
+        RowCachedDistanceMatrix cache = new RowCachedDistanceMatrix(source);
+        // Few enough rows that the threads keep evicting each other's
+        cache.setNeighbours(lists, K, 5);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int n = 0; n < 200000 && failure.get() == null; n++) {
+                    int i = random.nextInt(CITIES);
+                    int j = random.nextBoolean() ? lists[i * K + random.nextInt(K)] : random.nextInt(CITIES);
+                    double got = cache.get(i, j);
+                    if (got != source.get(i, j)) {
+                        failure.set(i + " to " + j + " was " + got);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(cache.getEvictions() > 0);
+    }
+}
@@ -0,0 +1,80 @@
+package src;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TourTest extends TestCase {
+
+    /**
+     * Checks that a tour is the same cycle as another, whichever way round each
+     * goes, and that between agrees with the order the tour stores its cities in
+     * 
+     * @param expected - Tour - the tour to compare with
+     * @param actual   - Tour - the tour to check
+     * @param random   - Random - picks the cities to check between with
+     */
+    private static void checkSameCycle(Tour expected, Tour actual, Random random) {
+        int n = expected.getNumCities();
+        for (int c = 0; c < n; c++) {
+            int next = actual.next(c);
+            int prev = actual.prev(c);
+            assertEquals(c, actual.prev(next));
+            boolean same = next == expected.next(c) && prev == expected.prev(c);
+            boolean flipped = next == expected.prev(c) && prev == expected.next(c);
+            assertTrue("City " + c + " has different neighbours", same || flipped);
+        }
+        int[] cities = new int[n];
+        int[] position = new int[n];
+        for (int k = 0; k < 20; k++) {
+            int a = random.nextInt(n);
+            actual.store(cities, a);
+            for (int i = 0; i < n; i++) {
+                position[cities[i]] = i;
+            }
+            int b = random.nextInt(n);
+            int c = random.nextInt(n);
+            assertEquals(position[b] <= position[c], actual.between(a, b, c));
+        }
+    }
+
+    public void testTwoLevelTourMatchesArrayTour() {
+        int n = 1000;
+        Random random = new Random(3);
+        int[] cities = new int[n];
+        for (int i = 0; i < n; i++) {
+            cities[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = cities[i];
+            cities[i] = cities[j];
+            cities[j] = swap;
+        }
+        ArrayTour array = new ArrayTour(n);
+        TwoLevelTour twoLevel = new TwoLevelTour(n);
+        array.load(cities);
+        twoLevel.load(cities);
+        checkSameCycle(array, twoLevel, random);
+        for (int k = 0; k < 2000; k++) {
+            // Reverse the same part of both - the part from a forwards to b in the
+            // array tour, which may be the part from b forwards to a in the other
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            if (a == b) {
+                continue;
+            }
+            boolean sameWay = twoLevel.next(a) == array.next(a);
+            array.reverse(a, b);
+            if (sameWay) {
+                twoLevel.reverse(a, b);
+            } else {
+                twoLevel.reverse(b, a);
+            }
+            if (k % 100 == 0) {
+                checkSameCycle(array, twoLevel, random);
+            }
+        }
+        checkSameCycle(array, twoLevel, random);
+    }
+}
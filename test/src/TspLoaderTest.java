@@ -0,0 +1,83 @@
+package src;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import junit.framework.TestCase;
+
+public class TspLoaderTest extends TestCase {
+    private File tspFile;
+
+    @Override
+    protected void tearDown() {
+        if (tspFile != null) {
+            tspFile.delete();
+        }
+    }
+
+    /**
+     * Writes a .tsp file and reads it
+     * 
+     * @param lines - String[] - the lines of the file
+     * @return Graph - the graph read
+     * @throws Exception - if the file can't be written or read
+     */
+    private Graph load(String... lines) throws Exception {
+        tspFile = File.createTempFile("tsploadertest", ".tsp");
+        try (FileWriter out = new FileWriter(tspFile)) {
+            for (String line : lines) {
+                out.write(line + "\n");
+            }
+        }
+        return new TspLoader().readTSP(tspFile);
+    }
+
+    /**
+     * Checks that reading a .tsp file fails, saying why
+     * 
+     * @param reason - String - part of the message it should fail with
+     * @param lines  - String[] - the lines of the file
+     * @throws Exception - if the file can't be written or read
+     */
+    private void assertRejected(String reason, String... lines) throws Exception {
+        try {
+            load(lines);
+            fail("Read a file that should be rejected for: " + reason);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(reason));
+        }
+    }
+
+    public void testReadsCoordinatesInAnyOrder() throws Exception {
+        Graph g = load("NAME : test", "DIMENSION : 3", "EDGE_WEIGHT_TYPE : EUC_2D", "NODE_COORD_SECTION",
+                "3 3 4", "1 0 0", "2 0 1", "EOF");
+        assertEquals(3, g.getNumCities());
+        assertEquals(5.0, g.getWeight(0, 2));
+        assertEquals(1.0, g.getWeight(0, 1));
+    }
+
+    public void testRejectsMissingNode() throws Exception {
+        assertRejected("Node 2 has no coordinates", "DIMENSION : 3", "EDGE_WEIGHT_TYPE : EUC_2D",
+                "NODE_COORD_SECTION", "1 0 0", "3 3 4", "EOF");
+        // Without an EOF line too
+        assertRejected("Node 3 has no coordinates", "DIMENSION : 3", "EDGE_WEIGHT_TYPE : EUC_2D",
+                "NODE_COORD_SECTION", "1 0 0", "2 0 1");
+    }
+
+    public void testRejectsNodeOutOfRange() throws Exception {
+        assertRejected("Node 4 is outside", "DIMENSION : 3", "EDGE_WEIGHT_TYPE : EUC_2D", "NODE_COORD_SECTION",
+                "1 0 0", "2 0 1", "4 3 4", "EOF");
+        assertRejected("Node 0 is outside", "DIMENSION : 3", "EDGE_WEIGHT_TYPE : EUC_2D", "NODE_COORD_SECTION",
+                "0 0 0", "EOF");
+    }
+
+    public void testRejectsEdgeWeightTypeAfterCoordinates() throws Exception {
+        assertRejected("EDGE_WEIGHT_TYPE must come before", "DIMENSION : 3", "NODE_COORD_SECTION", "1 0 0",
+                "2 0 1", "3 3 4", "EDGE_WEIGHT_TYPE : EUC_2D", "EOF");
+    }
+
+    public void testRejectsUnsupportedEdgeWeightType() throws Exception {
+        assertRejected("Unsupported EDGE_WEIGHT_TYPE", "DIMENSION : 3", "EDGE_WEIGHT_TYPE : EXPLICIT",
+                "NODE_COORD_SECTION", "1 0 0", "2 0 1", "3 3 4", "EOF");
+    }
+}
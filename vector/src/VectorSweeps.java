@@ -0,0 +1,107 @@
+package src;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorSweeps implements Sweeps {
+    // The widest vectors the CPU handles well - 4 doubles or 8 floats with AVX2,
+    // twice that with AVX-512
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    // Whatever is left over past the last whole vector is done by the plain loops
+    private ScalarSweeps tail = new ScalarSweeps();
+
+    @Override
+    public void scale(double[] a, int from, int to, double factor) {
+        int i = from;
+        for (int end = from + DOUBLES.loopBound(to - from); i < end; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).mul(factor).intoArray(a, i);
+        }
+        tail.scale(a, i, to, factor);
+    }
+
+    @Override
+    public void scale(float[] a, int from, int to, float factor) {
+        int i = from;
+        for (int end = from + FLOATS.loopBound(to - from); i < end; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, i).mul(factor).intoArray(a, i);
+        }
+        tail.scale(a, i, to, factor);
+    }
+
+    @Override
+    public void clamp(double[] a, int from, int to, double min, double max) {
+        int i = from;
+        for (int end = from + DOUBLES.loopBound(to - from); i < end; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).max(min).min(max).intoArray(a, i);
+        }
+        tail.clamp(a, i, to, min, max);
+    }
+
+    @Override
+    public void clamp(float[] a, int from, int to, float min, float max) {
+        int i = from;
+        for (int end = from + FLOATS.loopBound(to - from); i < end; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, i).max(min).min(max).intoArray(a, i);
+        }
+        tail.clamp(a, i, to, min, max);
+    }
+
+    @Override
+    public void offset(double[] a, int from, int to, double amount) {
+        int i = from;
+        for (int end = from + DOUBLES.loopBound(to - from); i < end; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).add(amount).intoArray(a, i);
+        }
+        tail.offset(a, i, to, amount);
+    }
+
+    @Override
+    public void offset(float[] a, int from, int to, float amount) {
+        int i = from;
+        for (int end = from + FLOATS.loopBound(to - from); i < end; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, i).add(amount).intoArray(a, i);
+        }
+        tail.offset(a, i, to, amount);
+    }
+
+    @Override
+    public void choiceInfo(double[] pheromone, double[] heuristic, int from, double[] choiceInfo, int to,
+            int length, double alpha) {
+        int k = 0;
+        for (int end = DOUBLES.loopBound(length); k < end; k += DOUBLES.length()) {
+            DoubleVector h = DoubleVector.fromArray(DOUBLES, heuristic, from + k);
+            // Only the lanes with a path are stored
+            VectorMask<Double> hasPath = h.compare(VectorOperators.NE, 0);
+            DoubleVector p = DoubleVector.fromArray(DOUBLES, pheromone, from + k);
+            if (alpha != 1) {
+                p = p.lanewise(VectorOperators.POW, alpha);
+            }
+            p.mul(h).intoArray(choiceInfo, to + k, hasPath);
+        }
+        tail.choiceInfo(pheromone, heuristic, from + k, choiceInfo, to + k, length - k, alpha);
+    }
+
+    @Override
+    public void choiceInfo(float[] pheromone, float[] heuristic, int from, float[] choiceInfo, int to, int length,
+            double alpha) {
+        int k = 0;
+        float alphaFloat = (float) alpha;
+        for (int end = FLOATS.loopBound(length); k < end; k += FLOATS.length()) {
+            FloatVector h = FloatVector.fromArray(FLOATS, heuristic, from + k);
+            VectorMask<Float> hasPath = h.compare(VectorOperators.NE, 0);
+            FloatVector p = FloatVector.fromArray(FLOATS, pheromone, from + k);
+            if (alpha != 1) {
+                // Worked out in float rather than double, so the last bit can differ from
+                // the plain loop's
+                p = p.lanewise(VectorOperators.POW, alphaFloat);
+            }
+            p.mul(h).intoArray(choiceInfo, to + k, hasPath);
+        }
+        tail.choiceInfo(pheromone, heuristic, from + k, choiceInfo, to + k, length - k, alpha);
+    }
+}
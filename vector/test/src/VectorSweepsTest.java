@@ -0,0 +1,126 @@
+package src;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class VectorSweepsTest extends TestCase {
+    // Lengths around and between the vector widths, so the plain loop finishing
+    // off each sweep is tested too
+    private static final int[] LENGTHS = { 0, 1, 3, 7, 8, 9, 15, 16, 17, 31, 33, 1001 };
+    // Where in the arrays each sweep starts, so it doesn't line up with a vector
+    private static final int FROM = 3;
+    // How far apart the two versions' results can be, relatively, when alpha
+    // isn't 1 and the vectorised pow is used
+    private static final double DOUBLE_TOLERANCE = 1e-14;
+    private static final double FLOAT_TOLERANCE = 1e-6;
+
+    private Sweeps vector = new VectorSweeps();
+    private Sweeps scalar = new ScalarSweeps();
+    private Random random = new Random(1);
+
+    /**
+     * Makes an array of random pheromone-like values
+     * 
+     * @param length - int - the length of the array
+     * @return double[] - the values, between 0 and 2
+     */
+    private double[] randomDoubles(int length) {
+        double[] a = new double[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = 2 * random.nextDouble();
+        }
+        return a;
+    }
+
+    /**
+     * Makes an array of random heuristic values, with some entries left as 0 as if
+     * there were no path
+     * 
+     * @param length - int - the length of the array
+     * @return double[] - the values
+     */
+    private double[] randomHeuristic(int length) {
+        double[] a = randomDoubles(length);
+        for (int i = 0; i < length; i += 5) {
+            a[i] = 0;
+        }
+        return a;
+    }
+
+    /**
+     * Converts an array of doubles to floats
+     * 
+     * @param a - double[] - the doubles
+     * @return float[] - the floats
+     */
+    private static float[] toFloats(double[] a) {
+        float[] f = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            f[i] = (float) a[i];
+        }
+        return f;
+    }
+
+    public void testVectorSweepsAreUsedWithTheModule() {
+        assertTrue(Sweeps.INSTANCE instanceof VectorSweeps);
+    }
+
+    public void testScaleClampAndOffsetMatchExactly() {
+        for (int length : LENGTHS) {
+            int to = FROM + length;
+            double[] a = randomDoubles(to + 2);
+            double[] b = a.clone();
+            float[] fa = toFloats(a);
+            float[] fb = fa.clone();
+            vector.scale(a, FROM, to, 0.7);
+            scalar.scale(b, FROM, to, 0.7);
+            vector.clamp(a, FROM, to, 0.2, 1.1);
+            scalar.clamp(b, FROM, to, 0.2, 1.1);
+            vector.offset(a, FROM, to, 0.05);
+            scalar.offset(b, FROM, to, 0.05);
+            assertTrue("Length " + length, Arrays.equals(a, b));
+            vector.scale(fa, FROM, to, 0.7f);
+            scalar.scale(fb, FROM, to, 0.7f);
+            vector.clamp(fa, FROM, to, 0.2f, 1.1f);
+            scalar.clamp(fb, FROM, to, 0.2f, 1.1f);
+            vector.offset(fa, FROM, to, 0.05f);
+            scalar.offset(fb, FROM, to, 0.05f);
+            assertTrue("Length " + length, Arrays.equals(fa, fb));
+        }
+    }
+
+    public void testChoiceInfoMatches() {
+        for (double alpha : new double[] { 1, 0.5, 2, 1.7 }) {
+            for (int length : LENGTHS) {
+                double[] pheromone = randomDoubles(FROM + length);
+                double[] heuristic = randomHeuristic(FROM + length);
+                // Written to somewhere else in the output than it's read from the input,
+                // and filled first so entries with no path can be seen to be left alone
+                double[] a = new double[length + 5];
+                double[] b = new double[length + 5];
+                Arrays.fill(a, -1);
+                Arrays.fill(b, -1);
+                vector.choiceInfo(pheromone, heuristic, FROM, a, 5, length, alpha);
+                scalar.choiceInfo(pheromone, heuristic, FROM, b, 5, length, alpha);
+                float[] fa = new float[length + 5];
+                float[] fb = new float[length + 5];
+                Arrays.fill(fa, -1);
+                Arrays.fill(fb, -1);
+                vector.choiceInfo(toFloats(pheromone), toFloats(heuristic), FROM, fa, 5, length, alpha);
+                scalar.choiceInfo(toFloats(pheromone), toFloats(heuristic), FROM, fb, 5, length, alpha);
+                String name = "alpha " + alpha + " length " + length;
+                if (alpha == 1) {
+                    assertTrue(name, Arrays.equals(a, b));
+                    assertTrue(name, Arrays.equals(fa, fb));
+                    continue;
+                }
+                for (int i = 0; i < a.length; i++) {
+                    assertEquals(name, b[i], a[i], Math.abs(b[i]) * DOUBLE_TOLERANCE);
+                    assertEquals(name, fb[i], fa[i], Math.abs(fb[i]) * FLOAT_TOLERANCE);
+                }
+            }
+        }
+    }
+}